@@ -0,0 +1,152 @@
+package com.dbh.training.rest;
+
+import ch.qos.logback.classic.Logger;
+import org.eclipse.jetty.server.Server;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test: latency of GET /api/users/{id} with many concurrent clients
+ * while every storage call blocks (user.store.simulated.latency.ms).
+ * 
+ * Run with: ./gradlew jmh -PjmhIncludes=RequestConcurrencyBenchmark
+ * 
+ * Modes (one embedded server per fork):
+ * - sync: the resource runs on Jetty's request thread (default pool, 200 threads)
+ * - pool: async mode on the bounded ResourceExecutor pool (async.threads)
+ * - virtual: async mode on one virtual thread per request; needs a Java 21+
+ *   JVM for the fork, on older JVMs this mode fails at startup. The build
+ *   JDK can stay older: -PjmhJvm=/path/to/jdk21/bin/java runs the forks on 21
+ * 
+ * With more clients than threads the requests queue: compare the p0.50 and
+ * p0.99 lines of the sample-time output. Every client holds one keep-alive
+ * connection; -PjmhThreads=N sets the number of clients (default 400).
+ * 
+ * Each client also counts its responses: "ok", "rejected" (503 from the
+ * executor or admission control, fast samples that flatter the
+ * percentiles) and "failed" (connection refused, reset or timed out). The
+ * maximum sustained concurrent connections of a mode is the highest
+ * -PjmhThreads at which "failed" and "rejected" stay at 0.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(400)
+public class RequestConcurrencyBenchmark {
+    
+    private static final int PORT = 18090;
+    private static final int USERS = 100;
+    
+    @Param({"sync", "pool", "virtual"})
+    private String mode;
+    
+    @Param({"20"})
+    private long latencyMillis;
+    
+    private Server server;
+    
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        System.setProperty("async.enabled", Boolean.toString(!mode.equals("sync")));
+        System.setProperty("async.virtual.threads", Boolean.toString(mode.equals("virtual")));
+        System.setProperty("user.store.simulated.latency.ms", Long.toString(latencyMillis));
+        // One log line per request would dominate the measurement
+        ((Logger) LoggerFactory.getLogger("com.dbh.training.rest")).setLevel(ch.qos.logback.classic.Level.WARN);
+        
+        server = Application.createServer(PORT);
+        server.start();
+        for (int i = 1; i <= USERS; i++) {
+            post("{\"username\":\"user" + i + "\",\"email\":\"user" + i + "@example.com\"}");
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        server.stop();
+    }
+    
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Client {
+        private int next;
+        // Reported next to the timings
+        public long ok;
+        public long rejected;
+        public long failed;
+        
+        @Setup(Level.Iteration)
+        public void reset() {
+            ok = 0;
+            rejected = 0;
+            failed = 0;
+        }
+    }
+    
+    @Benchmark
+    public int getUser(Client client) {
+        long id = client.next++ % USERS + 1;
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                "http://localhost:" + PORT + "/api/users/" + id).openConnection();
+            connection.setConnectTimeout(10_000);
+            connection.setReadTimeout(30_000);
+            // Read the whole body so the keep-alive connection is reused
+            try (InputStream body = connection.getResponseCode() < 400
+                    ? connection.getInputStream() : connection.getErrorStream()) {
+                byte[] buffer = new byte[4096];
+                while (body != null && body.read(buffer) != -1) {
+                    // drain
+                }
+            }
+            int status = connection.getResponseCode();
+            if (status == 503) {
+                client.rejected++;
+            } else {
+                client.ok++;
+            }
+            return status;
+        } catch (IOException e) {
+            client.failed++;
+            return -1;
+        }
+    }
+    
+    private static void post(String json) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(
+            "http://localhost:" + PORT + "/api/users").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream output = connection.getOutputStream()) {
+            output.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        if (connection.getResponseCode() != 201) {
+            throw new IllegalStateException("Could not create test user: " + connection.getResponseCode());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.dbh.training.rest;
+
+import ch.qos.logback.classic.Logger;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+import org.eclipse.jetty.server.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip latency of one HTTP/1.1 request over loopback TCP versus the
+ * Unix domain socket connector (server.unix.socket.enabled).
+ * 
+ * Run with: ./gradlew jmh -PjmhIncludes=UnixSocketBenchmark
+ * 
+ * Both clients write the same raw request on a kept-alive connection and
+ * read the response up to its Content-Length, so the difference is the
+ * transport, not the HTTP client. GET /api/health does no storage work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class UnixSocketBenchmark {
+    
+    private static final int PORT = 18091;
+    private static final String SOCKET = "/tmp/dbh-rest-training-benchmark.sock";
+    private static final byte[] REQUEST =
+        "GET /api/health HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    
+    private Server server;
+    
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        System.setProperty("server.unix.socket.enabled", "true");
+        System.setProperty("server.unix.socket.path", SOCKET);
+        // One log line per request would dominate the measurement
+        ((Logger) LoggerFactory.getLogger("com.dbh.training.rest")).setLevel(ch.qos.logback.classic.Level.WARN);
+        
+        server = Application.createServer(PORT);
+        server.start();
+    }
+    
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        server.stop();
+    }
+    
+    @State(Scope.Thread)
+    public static class Connections {
+        private SocketChannel tcp;
+        private UnixSocketChannel unix;
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        
+        @Setup(Level.Trial)
+        // Takes the benchmark state so the server is started first
+        public void connect(UnixSocketBenchmark benchmark) throws IOException {
+            tcp = SocketChannel.open(new InetSocketAddress("localhost", PORT));
+            tcp.socket().setTcpNoDelay(true);
+            unix = UnixSocketChannel.open(new UnixSocketAddress(new File(SOCKET)));
+        }
+        
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            tcp.close();
+            unix.close();
+        }
+    }
+    
+    @Benchmark
+    public int tcpLoopback(Connections connections) throws IOException {
+        return roundTrip(connections.tcp, connections.buffer);
+    }
+    
+    @Benchmark
+    public int unixSocket(Connections connections) throws IOException {
+        return roundTrip(connections.unix, connections.buffer);
+    }
+    
+    // Sends the request and reads one complete response, returns the status code
+    private static int roundTrip(ByteChannel channel, ByteBuffer buffer) throws IOException {
+        ByteBuffer request = ByteBuffer.wrap(REQUEST);
+        while (request.hasRemaining()) {
+            channel.write(request);
+        }
+        buffer.clear();
+        int headerEnd = -1;
+        int length = -1;
+        while (length < 0 || buffer.position() < headerEnd + length) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Connection closed by server");
+            }
+            if (headerEnd < 0) {
+                headerEnd = headerEnd(buffer);
+                if (headerEnd >= 0) {
+                    length = contentLength(new String(buffer.array(), 0, headerEnd, StandardCharsets.US_ASCII));
+                }
+            }
+        }
+        // "HTTP/1.1 200 OK"
+        return Integer.parseInt(new String(buffer.array(), 9, 3, StandardCharsets.US_ASCII));
+    }
+    
+    // Position after the blank line that ends the headers, or -1
+    private static int headerEnd(ByteBuffer buffer) {
+        byte[] bytes = buffer.array();
+        for (int i = 3; i < buffer.position(); i++) {
+            if (bytes[i] == '\n' && bytes[i - 1] == '\r' && bytes[i - 2] == '\n' && bytes[i - 3] == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+    
+    private static int contentLength(String headers) {
+        for (String line : headers.split("\r\n")) {
+            if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                return Integer.parseInt(line.substring(15).trim());
+            }
+        }
+        throw new IllegalStateException("Response without Content-Length:\n" + headers);
+    }
+}
@@ -0,0 +1,70 @@
+package com.dbh.training.rest.config;
+
+import com.dbh.training.rest.models.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes and deserializes a single User with each json.bytecode.module
+ * setting (plain reflection, Afterburner, Blackbird).
+ * 
+ * Run with: ./gradlew jmh -PjmhIncludes=JacksonModuleBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JacksonModuleBenchmark {
+    
+    @Param({"none", "afterburner", "blackbird"})
+    private String module;
+    
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private User user;
+    private byte[] json;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("json.bytecode.module", module);
+        ObjectMapper mapper = JacksonConfig.createObjectMapper(new ApplicationProperties(properties));
+        writer = mapper.writerFor(User.class);
+        reader = mapper.readerFor(User.class);
+        
+        user = new User("jdoe", "john.doe@example.com", "John", "Doe");
+        user.setId(12345L);
+        user.setCreatedAt(LocalDateTime.now());
+        json = writer.writeValueAsBytes(user);
+    }
+    
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return writer.writeValueAsBytes(user);
+    }
+    
+    @Benchmark
+    public User deserialize() throws IOException {
+        return reader.readValue(json);
+    }
+}
@@ -0,0 +1,79 @@
+package com.dbh.training.rest.config;
+
+import com.dbh.training.rest.models.User;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes one GET /users page with the JacksonConfig mapper, compact
+ * (the default) against pretty-printed (?pretty=true).
+ * 
+ * Run with: ./gradlew jmh -PjmhIncludes=JsonOutputBenchmark
+ * 
+ * The gc profiler's "gc.alloc.rate.norm" shows the bytes allocated per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonOutputBenchmark {
+    
+    @Param({"100", "1000"})
+    private int pageSize;
+    
+    private List<User> page;
+    private ObjectWriter compact;
+    private ObjectWriter pretty;
+    private ByteArrayOutputStream buffer;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        page = new ArrayList<>(pageSize);
+        for (long id = 1; id <= pageSize; id++) {
+            User user = new User("user" + id, "user" + id + "@example.com", "First", "Last");
+            user.setId(id);
+            user.setCreatedAt(LocalDateTime.now());
+            page.add(user);
+        }
+        compact = new JacksonConfig().getContext(User.class).writer();
+        pretty = compact.with(SerializationFeature.INDENT_OUTPUT);
+        buffer = new ByteArrayOutputStream(pageSize * 256);
+    }
+    
+    @Benchmark
+    public int compact() throws IOException {
+        return write(compact);
+    }
+    
+    @Benchmark
+    public int pretty() throws IOException {
+        return write(pretty);
+    }
+    
+    private int write(ObjectWriter writer) throws IOException {
+        buffer.reset();
+        writer.writeValue(buffer, page);
+        return buffer.size();
+    }
+}
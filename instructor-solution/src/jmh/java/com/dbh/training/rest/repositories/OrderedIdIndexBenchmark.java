@@ -0,0 +1,59 @@
+package com.dbh.training.rest.repositories;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-user cost of the ordered id index used for paging: the old
+ * ConcurrentSkipListSet&lt;Long&gt; against SortedLongIds.
+ * 
+ * Run with: ./gradlew jmh -PjmhIncludes=OrderedIdIndexBenchmark
+ * 
+ * Each invocation builds a fresh index of USERS ascending ids, so with the gc
+ * profiler "gc.alloc.rate.norm" is the number of bytes allocated per indexed
+ * user. For the skip list all of it stays reachable (Long, node, index
+ * nodes); for SortedLongIds it includes the arrays dropped while growing,
+ * of which only the final long[] is retained.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderedIdIndexBenchmark {
+    
+    private static final int USERS = 1_000_000;
+    
+    @Benchmark
+    @OperationsPerInvocation(USERS)
+    public Object concurrentSkipListSetAdd() {
+        NavigableSet<Long> ids = new ConcurrentSkipListSet<>();
+        for (long id = 1; id <= USERS; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(USERS)
+    public Object sortedLongIdsAdd() {
+        SortedLongIds ids = new SortedLongIds(id -> true);
+        for (long id = 1; id <= USERS; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+}
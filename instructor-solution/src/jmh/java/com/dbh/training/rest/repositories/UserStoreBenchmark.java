@@ -0,0 +1,86 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares id lookups (the getUserById path) on ConcurrentHashMap&lt;Long, User&gt;
+ * against ConcurrentLongObjectMap&lt;User&gt;.
+ * 
+ * Run with: ./gradlew jmh
+ * 
+ * The gc profiler is enabled in build.gradle; compare "gc.alloc.rate.norm"
+ * (bytes allocated per lookup) next to the ns/op scores. Ids above 127 are
+ * not covered by the Long cache, so every ConcurrentHashMap lookup boxes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class UserStoreBenchmark {
+    
+    @Param({"100000", "1000000"})
+    private int userCount;
+    
+    private Map<Long, User> concurrentHashMap;
+    private ConcurrentLongObjectMap<User> longObjectMap;
+    private long[] lookupIds;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        concurrentHashMap = new ConcurrentHashMap<>();
+        longObjectMap = new ConcurrentLongObjectMap<>();
+        for (long id = 1; id <= userCount; id++) {
+            User user = new User("user" + id, "user" + id + "@example.com", "First", "Last");
+            user.setId(id);
+            concurrentHashMap.put(id, user);
+            longObjectMap.put(id, user);
+        }
+        
+        Random random = new Random(42);
+        lookupIds = new long[4096];
+        for (int i = 0; i < lookupIds.length; i++) {
+            lookupIds[i] = 1 + random.nextInt(userCount);
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+        
+        int advance(int length) {
+            next = (next + 1) & (length - 1);
+            return next;
+        }
+    }
+    
+    @Benchmark
+    public User concurrentHashMapGet(Cursor cursor) {
+        return concurrentHashMap.get(lookupIds[cursor.advance(lookupIds.length)]);
+    }
+    
+    @Benchmark
+    public User concurrentLongObjectMapGet(Cursor cursor) {
+        return longObjectMap.get(lookupIds[cursor.advance(lookupIds.length)]);
+    }
+}
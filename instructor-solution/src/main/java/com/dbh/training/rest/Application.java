@@ -7,7 +7,9 @@ import org.glassfish.jersey.servlet.ServletContainer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.dbh.training.rest.config.ApplicationProperties;
 import com.dbh.training.rest.config.JerseyConfig;
+import com.dbh.training.rest.config.JettyConfig;
 
 /**
  * Main application class that starts an embedded Jetty server with Jersey REST endpoints.
@@ -27,11 +29,12 @@ public class Application {
     private Server server;
     
     public Application() {
-        this(DEFAULT_PORT);
+        this(configuredPort());
     }
     
     public Application(int port) {
-        this.server = new Server(port);
+        // Thread pool and connector settings come from server.* properties
+        this.server = JettyConfig.createServer(port, ApplicationProperties.get());
     }
     
     /**
@@ -43,6 +46,8 @@ public class Application {
         // Create servlet context handler with sessions disabled (REST is stateless)
         ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
         context.setContextPath(DEFAULT_CONTEXT_PATH);
+        // Lets HealthResource report thread pool usage
+        context.setAttribute(JettyConfig.THREAD_POOL_ATTRIBUTE, server.getThreadPool());
         
         server.setHandler(context);
         
@@ -103,11 +108,13 @@ public class Application {
      * @return Configured Jetty server
      */
     public static Server createServer(int port) {
-        Server server = new Server(port);
+        Server server = JettyConfig.createServer(port, ApplicationProperties.get());
         
         // Create servlet context handler with sessions disabled (REST is stateless)
         ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
         context.setContextPath(DEFAULT_CONTEXT_PATH);
+        // Lets HealthResource report thread pool usage
+        context.setAttribute(JettyConfig.THREAD_POOL_ATTRIBUTE, server.getThreadPool());
         
         server.setHandler(context);
         
@@ -124,14 +131,23 @@ public class Application {
         return server;
     }
     
+    /**
+     * Port from the server.port property, used when no port is given explicitly.
+     */
+    private static int configuredPort() {
+        return ApplicationProperties.get().getInt("server.port", DEFAULT_PORT);
+    }
+    
     /**
      * Main entry point for the application.
      * 
      * @param args Command line arguments (optional: port number)
      */
     public static void main(String[] args) {
-        // Parse port from command line arguments or environment variable
-        int port = DEFAULT_PORT;
+        // Parse port from command line arguments or environment variable,
+        // falling back to server.port
+        int defaultPort = configuredPort();
+        int port = defaultPort;
         
         // Check command line argument
         if (args.length > 0) {
@@ -139,7 +155,7 @@ public class Application {
                 port = Integer.parseInt(args[0]);
                 logger.info("Using port from command line: {}", port);
             } catch (NumberFormatException e) {
-                logger.warn("Invalid port number: {}, using default: {}", args[0], DEFAULT_PORT);
+                logger.warn("Invalid port number: {}, using default: {}", args[0], defaultPort);
             }
         }
         
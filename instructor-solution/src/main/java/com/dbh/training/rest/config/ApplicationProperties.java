@@ -0,0 +1,99 @@
+package com.dbh.training.rest.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Read-only access to the application configuration.
+ * 
+ * Values are resolved in this order (first match wins):
+ * - System property (e.g. -Dserver.port=9090)
+ * - Environment variable (e.g. SERVER_PORT=9090)
+ * - application.properties on the classpath
+ * - The default passed by the caller
+ */
+public class ApplicationProperties {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ApplicationProperties.class);
+    private static final String RESOURCE_NAME = "/application.properties";
+    
+    private static final ApplicationProperties INSTANCE = new ApplicationProperties(loadDefaults());
+    
+    private final Properties properties;
+    
+    public ApplicationProperties(Properties properties) {
+        this.properties = properties;
+    }
+    
+    /**
+     * Shared instance backed by the bundled application.properties.
+     */
+    public static ApplicationProperties get() {
+        return INSTANCE;
+    }
+    
+    public String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(toEnvName(key));
+        }
+        if (value == null) {
+            value = properties.getProperty(key);
+        }
+        return value != null ? value.trim() : defaultValue;
+    }
+    
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid integer for {}: {}, using default: {}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+    
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid number for {}: {}, using default: {}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+    
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+    
+    // server.port -> SERVER_PORT
+    private static String toEnvName(String key) {
+        return key.toUpperCase().replace('.', '_').replace('-', '_');
+    }
+    
+    private static Properties loadDefaults() {
+        Properties defaults = new Properties();
+        try (InputStream in = ApplicationProperties.class.getResourceAsStream(RESOURCE_NAME)) {
+            if (in != null) {
+                defaults.load(in);
+            } else {
+                logger.warn("{} not found on classpath, using built-in defaults", RESOURCE_NAME);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read {}, using built-in defaults", RESOURCE_NAME, e);
+        }
+        return defaults;
+    }
+}
@@ -0,0 +1,105 @@
+package com.dbh.training.rest.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Base class for entity providers of Jackson's binary formats (Smile, CBOR).
+ * 
+ * The mapper is a copy of the JSON mapper from JacksonConfig with a
+ * different JsonFactory, so modules, date handling, null inclusion and
+ * unknown-property handling are identical in every format. Clients choose
+ * the format with Accept / Content-Type; JSON stays the default.
+ * 
+ * Malformed input surfaces as a Jackson exception, which the mappers
+ * registered by JacksonFeature turn into 400 Bad Request, just like JSON.
+ */
+public abstract class BinaryJacksonProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+    
+    private final MediaType mediaType;
+    private final JsonFactory factory;
+    
+    @Context
+    private Providers providers;
+    
+    private volatile ObjectMapper objectMapper;
+    
+    protected BinaryJacksonProvider(MediaType mediaType, JsonFactory factory) {
+        this.mediaType = mediaType;
+        // Jersey owns the entity streams
+        this.factory = factory
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+    
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return this.mediaType.isCompatible(mediaType) && !isRawType(type);
+    }
+    
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        ObjectMapper mapper = objectMapper();
+        JavaType javaType = mapper.getTypeFactory().constructType(genericType);
+        return mapper.readerFor(javaType).readValue(entityStream);
+    }
+    
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return this.mediaType.isCompatible(mediaType) && !isRawType(type);
+    }
+    
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        ObjectMapper mapper = objectMapper();
+        // The declared type keeps element types of generic lists
+        ObjectWriter writer = genericType != null && genericType != type
+            ? mapper.writerFor(mapper.getTypeFactory().constructType(genericType))
+            : mapper.writer();
+        writer.writeValue(entityStream, value);
+    }
+    
+    private ObjectMapper objectMapper() {
+        ObjectMapper mapper = objectMapper;
+        if (mapper == null) {
+            ContextResolver<ObjectMapper> resolver = providers != null
+                ? providers.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE)
+                : null;
+            ObjectMapper json = resolver != null ? resolver.getContext(Object.class) : new ObjectMapper();
+            mapper = json.copyWith(factory);
+            objectMapper = mapper;
+        }
+        return mapper;
+    }
+    
+    // Types with their own built-in providers (error messages are plain strings)
+    private static boolean isRawType(Class<?> type) {
+        return type == String.class
+            || type == byte[].class
+            || type == char[].class
+            || InputStream.class.isAssignableFrom(type)
+            || Reader.class.isAssignableFrom(type)
+            || StreamingOutput.class.isAssignableFrom(type);
+    }
+}
@@ -0,0 +1,23 @@
+package com.dbh.training.rest.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Reads and writes entities as CBOR, RFC 8949
+ * (Accept / Content-Type: application/cbor).
+ */
+@Produces(CborProvider.CBOR)
+@Consumes(CborProvider.CBOR)
+public class CborProvider extends BinaryJacksonProvider {
+    
+    public static final String CBOR = "application/cbor";
+    public static final MediaType CBOR_TYPE = MediaType.valueOf(CBOR);
+    
+    public CborProvider() {
+        super(CBOR_TYPE, new CBORFactory());
+    }
+}
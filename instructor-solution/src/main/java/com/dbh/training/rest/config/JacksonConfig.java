@@ -8,6 +8,11 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.text.SimpleDateFormat;
 import java.util.TimeZone;
@@ -18,16 +23,23 @@ import java.util.TimeZone;
  * This class configures how Jackson handles JSON in the REST API:
  * - Date/time formatting
  * - Null value handling
- * - Pretty printing
+ * - Compact output (pretty printing is opt-in per request, see PrettyPrintFilter)
  * - Java 8 time support
+ * - Optional bytecode acceleration (json.bytecode.module)
  */
 @Provider
 public class JacksonConfig implements ContextResolver<ObjectMapper> {
     
+    private static final Logger logger = LoggerFactory.getLogger(JacksonConfig.class);
+    
     private final ObjectMapper objectMapper;
     
     public JacksonConfig() {
-        objectMapper = new ObjectMapper();
+        objectMapper = createObjectMapper(ApplicationProperties.get());
+    }
+    
+    static ObjectMapper createObjectMapper(ApplicationProperties properties) {
+        ObjectMapper objectMapper = new ObjectMapper();
         
         // Java 8 time support (LocalDate, LocalDateTime, etc.)
         objectMapper.registerModule(new JavaTimeModule());
@@ -39,7 +51,6 @@ public class JacksonConfig implements ContextResolver<ObjectMapper> {
         
         // Serialization features
         objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
-        objectMapper.configure(SerializationFeature.INDENT_OUTPUT, true);  // Pretty print
         objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
         
         // Deserialization features
@@ -50,13 +61,33 @@ public class JacksonConfig implements ContextResolver<ObjectMapper> {
         // Include only non-null values in JSON output
         objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
         
-        // For training purposes, we'll keep pretty printing enabled
-        // In production, you might want to disable it for performance
-        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        // Compact by default: indentation costs bytes on the wire and extra writes
+        // on every response. Use ?pretty=true when reading responses by hand.
+        objectMapper.configure(SerializationFeature.INDENT_OUTPUT,
+            properties.getBoolean("json.pretty.print", false));
+        
+        // Replace reflective getter/setter/constructor calls with generated code
+        // for every bean the mapper handles (User, BatchResult, ...)
+        String module = properties.getString("json.bytecode.module", "none");
+        switch (module) {
+            case "afterburner":
+                logger.info("Using Jackson Afterburner module");
+                objectMapper.registerModule(new AfterburnerModule());
+                break;
+            case "blackbird":
+                logger.info("Using Jackson Blackbird module");
+                objectMapper.registerModule(new BlackbirdModule());
+                break;
+            case "none":
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown json.bytecode.module: " + module);
+        }
+        return objectMapper;
     }
     
     @Override
     public ObjectMapper getContext(Class<?> type) {
         return objectMapper;
     }
-}
\ No newline at end of file
+}
@@ -1,20 +1,43 @@
 package com.dbh.training.rest.config;
 
+import org.glassfish.jersey.internal.inject.AbstractBinder;
 import org.glassfish.jersey.jackson.JacksonFeature;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.server.ServerProperties;
+import org.glassfish.jersey.server.spi.AbstractContainerLifecycleListener;
+import org.glassfish.jersey.server.spi.Container;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.dbh.training.rest.filters.AdaptiveConcurrencyLimit;
+import com.dbh.training.rest.filters.AdmissionControlFilter;
 import com.dbh.training.rest.filters.CORSFilter;
 import com.dbh.training.rest.filters.LoggingFilter;
+import com.dbh.training.rest.repositories.DurableUserRepository;
+import com.dbh.training.rest.repositories.InMemoryUserRepository;
+import com.dbh.training.rest.repositories.ObservableUserRepository;
+import com.dbh.training.rest.repositories.OffHeapUserRepository;
+import com.dbh.training.rest.repositories.SimulatedLatencyUserRepository;
+import com.dbh.training.rest.repositories.UserIndex;
+import com.dbh.training.rest.repositories.UserRepository;
+import com.dbh.training.rest.repositories.UserResponseCache;
+import com.dbh.training.rest.repositories.UserSearchIndex;
+import com.dbh.training.rest.repositories.UserStoreVersion;
+import com.dbh.training.rest.resources.ResourceExecutor;
+import com.dbh.training.rest.resources.UserEventBroadcaster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 
 /**
  * Jersey configuration class that sets up:
  * - Package scanning for resources
- * - Jackson JSON provider
+ * - Jackson JSON provider (plus Smile, CBOR and protobuf on request)
  * - Exception mappers
- * - Filters (CORS, Logging)
+ * - Filters (CORS, Logging, admission control)
+ * - Storage (UserRepository implementation injected into resources)
  * 
  * This replaces web.xml configuration in traditional servlet deployments.
  */
@@ -34,9 +57,93 @@ public class JerseyConfig extends ResourceConfig {
         register(JacksonFeature.class);
         register(JacksonConfig.class);
         
+        // Binary alternatives to JSON, selected by Accept / Content-Type
+        register(SmileProvider.class);
+        register(CborProvider.class);
+        register(ProtobufProvider.class);
+        
+        // Bind the storage engine so resources can @Inject UserRepository.
+        // Writes go through ObservableUserRepository, which keeps the
+        // username/email index and the search index in sync.
+        ApplicationProperties properties = ApplicationProperties.get();
+        UserRepository storage = createUserRepository(properties);
+        ObservableUserRepository userRepository = new ObservableUserRepository(storage);
+        UserIndex userIndex = new UserIndex();
+        userIndex.rebuild(userRepository.iterateFrom(0L));
+        userRepository.addListener(userIndex);
+        UserSearchIndex userSearchIndex = new UserSearchIndex();
+        userSearchIndex.rebuild(userRepository.iterateFrom(0L));
+        userRepository.addListener(userSearchIndex);
+        // Serialized single-user responses, dropped on every write to that user
+        UserResponseCache responseCache = new UserResponseCache(
+            properties.getLong("response.cache.size.mb", 16) * 1024 * 1024);
+        userRepository.addListener(responseCache);
+        // Last listener: bumped only once the indexes reflect the write.
+        // Also keeps the changelog behind GET /users/changes.
+        UserStoreVersion storeVersion = new UserStoreVersion(
+            properties.getInt("user.changelog.capacity", 65536));
+        userRepository.addListener(storeVersion);
+        // After storeVersion: events carry the version of the write as their id
+        UserEventBroadcaster eventBroadcaster = new UserEventBroadcaster(storeVersion,
+            properties.getInt("events.queue.capacity", 256),
+            properties.getInt("events.sender.threads", 2),
+            properties.getLong("events.send.timeout.ms", 5000L));
+        userRepository.addListener(eventBroadcaster);
+        
+        // With async.enabled, resource methods run their storage work on this executor
+        ResourceExecutor resourceExecutor = createResourceExecutor(properties);
+        
+        // Adaptive limit on requests in progress, enforced by AdmissionControlFilter
+        AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(
+            properties.getBoolean("admission.enabled", true),
+            properties.getInt("admission.limit.initial", 100),
+            properties.getInt("admission.limit.min", 10),
+            properties.getInt("admission.limit.max", 1000),
+            properties.getLong("admission.latency.target.ms", 1000),
+            0.9);
+        
+        register(new AbstractBinder() {
+            @Override
+            protected void configure() {
+                bind(userRepository).to(UserRepository.class).to(ObservableUserRepository.class);
+                bind(userIndex).to(UserIndex.class);
+                bind(userSearchIndex).to(UserSearchIndex.class);
+                bind(storeVersion).to(UserStoreVersion.class);
+                bind(responseCache).to(UserResponseCache.class);
+                bind(eventBroadcaster).to(UserEventBroadcaster.class);
+                bind(resourceExecutor).to(ResourceExecutor.class);
+                bind(concurrencyLimit).to(AdaptiveConcurrencyLimit.class);
+            }
+        });
+        register(new AbstractContainerLifecycleListener() {
+            @Override
+            public void onShutdown(Container container) {
+                eventBroadcaster.close();
+                resourceExecutor.close();
+            }
+        });
+        if (storage instanceof Closeable) {
+            // Flush and close durable storage when the application shuts down
+            register(new AbstractContainerLifecycleListener() {
+                @Override
+                public void onShutdown(Container container) {
+                    try {
+                        ((Closeable) storage).close();
+                    } catch (IOException e) {
+                        logger.error("Error closing user repository", e);
+                    }
+                }
+            });
+        }
+        
         // Register filters (commented out for Exercise 02)
         // register(CORSFilter.class);
         // register(LoggingFilter.class);
+        // Load shedding: 503 + Retry-After above the adaptive concurrency limit.
+        // Registered as an instance (not found by scanning): it is both the
+        // request filter and the listener that frees the slot when a request ends.
+        register(new AdmissionControlFilter(concurrencyLimit,
+            properties.getInt("admission.retry.after.seconds", 1)));
         
         // Disable validation for Exercise 02 (will be enabled in Exercise 03)
         // property(ServerProperties.BV_SEND_ERROR_IN_RESPONSE, true);
@@ -51,4 +158,75 @@ public class JerseyConfig extends ResourceConfig {
         logger.info("Scanning packages: com.dbh.training.rest");
         logger.info("Features enabled: Jackson JSON, CORS, Request/Response Logging");
     }
+    
+    /**
+     * Select the user storage engine from the user.repository property:
+     * "memory" (default, on-heap map) or "offheap" (direct ByteBuffer slabs).
+     * With user.store.durable=true the engine is wrapped with a write-ahead
+     * log and snapshots so data survives restarts. For load tests,
+     * user.store.simulated.latency.ms makes every storage call block.
+     */
+    static UserRepository createUserRepository(ApplicationProperties properties) {
+        UserRepository repository;
+        String type = properties.getString("user.repository", "memory");
+        switch (type) {
+            case "offheap":
+                int slabSizeMb = properties.getInt("user.repository.offheap.slab.size.mb",
+                    OffHeapUserRepository.DEFAULT_SLAB_SIZE / (1024 * 1024));
+                logger.info("Using off-heap user repository ({} MB slabs)", slabSizeMb);
+                repository = new OffHeapUserRepository(slabSizeMb * 1024 * 1024);
+                break;
+            case "memory":
+                logger.info("Using in-memory user repository");
+                repository = new InMemoryUserRepository();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown user.repository: " + type);
+        }
+        
+        if (properties.getBoolean("user.store.durable", false)) {
+            String dataDir = properties.getString("user.store.data.dir", "data");
+            logger.info("Persisting users to {}", Paths.get(dataDir).toAbsolutePath());
+            try {
+                repository = new DurableUserRepository(repository,
+                    Paths.get(dataDir),
+                    properties.getInt("user.store.wal.segment.size.mb", 64) * 1024 * 1024,
+                    properties.getBoolean("user.store.wal.group.commit", true),
+                    properties.getLong("user.store.snapshot.interval.seconds", 300));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open user store in " + dataDir, e);
+            }
+        }
+        
+        long latencyMillis = properties.getLong("user.store.simulated.latency.ms", 0);
+        if (latencyMillis > 0) {
+            logger.warn("Adding {} ms of simulated latency to every storage call", latencyMillis);
+            repository = new SimulatedLatencyUserRepository(repository, latencyMillis);
+        }
+        return repository;
+    }
+    
+    /**
+     * Executor for resource methods: one virtual thread per request when
+     * async.virtual.threads=true (Java 21+, whatever async.enabled says, since
+     * Jetty 9.4 cannot run its own request threads as virtual threads), else a
+     * bounded pool of platform threads when async.enabled=true, else the
+     * calling (Jetty) thread.
+     */
+    static ResourceExecutor createResourceExecutor(ApplicationProperties properties) {
+        long timeoutMillis = properties.getLong("async.timeout.ms", 30000);
+        int retryAfterSeconds = properties.getInt("async.retry.after.seconds", 1);
+        if (properties.getBoolean("async.virtual.threads", false)) {
+            int maxConcurrent = properties.getInt("async.virtual.max.concurrent", 10000);
+            logger.info("Running requests on virtual threads (at most {} at a time)", maxConcurrent);
+            return ResourceExecutor.virtualThreads(maxConcurrent, timeoutMillis, retryAfterSeconds);
+        }
+        if (!properties.getBoolean("async.enabled", false)) {
+            return new ResourceExecutor(0, 0, timeoutMillis, retryAfterSeconds);
+        }
+        int threads = properties.getInt("async.threads", 32);
+        logger.info("Running requests on a pool of {} threads", threads);
+        return new ResourceExecutor(threads, properties.getInt("async.queue.capacity", 1000),
+            timeoutMillis, retryAfterSeconds);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,288 @@
+package com.dbh.training.rest.config;
+
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.unixsocket.UnixSocketConnector;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Jetty thread pool and connector configuration (server.* properties).
+ * 
+ * new Server(port) uses fixed defaults: 8 to 200 threads, acceptors and
+ * selectors derived from the number of CPUs, a 30 second idle timeout.
+ * Building the QueuedThreadPool and ServerConnector here makes all of it
+ * tunable per deployment, e.g. SERVER_THREADS_MAX=400 in the environment.
+ * 
+ * Sizing hints:
+ * - Every request holds a pool thread while Jersey runs it (unless async.enabled),
+ *   so server.threads.max bounds the requests in progress
+ * - Acceptors and selectors are taken from the same pool ("leased" threads)
+ * - Requests that find no idle thread wait in the pool's queue; a growing
+ *   "queued" count under /api/health/details means the pool is too small
+ * 
+ * HTTP/2 (server.http2.enabled, on by default):
+ * - The plain connector also speaks h2c, both with prior knowledge and after
+ *   an "Upgrade: h2c" request; HTTP/1.1 clients are served as before
+ * - With server.ssl.enabled a second connector on server.ssl.port serves TLS
+ *   and negotiates h2 or http/1.1 with ALPN
+ * Many requests then share one connection as concurrent streams, so a slow
+ * response no longer blocks the ones behind it and clients need far fewer
+ * connections. Each stream still takes a pool thread while Jersey runs it.
+ * 
+ * With server.unix.socket.enabled the same HTTP/1.1 and h2c protocols are
+ * also served on a Unix domain socket, e.g. for a sidecar proxy on the same
+ * host. Local traffic then skips the TCP/IP stack (no handshake, checksums
+ * or loopback routing). Jetty 9.4 reaches the socket through jnr-unixsocket
+ * (native code, Linux and macOS), since Java 8 has no such channel.
+ */
+public class JettyConfig {
+    
+    private static final Logger logger = LoggerFactory.getLogger(JettyConfig.class);
+    
+    /**
+     * Servlet context attribute holding the server's QueuedThreadPool.
+     */
+    public static final String THREAD_POOL_ATTRIBUTE = "com.dbh.training.rest.threadPool";
+    
+    private JettyConfig() {
+    }
+    
+    /**
+     * Creates a server with a configured thread pool, a plain HTTP/1.1 (and h2c)
+     * connector and, if enabled, a TLS and a Unix domain socket connector.
+     * 
+     * @param port The port of the plain connector
+     * @param properties Source of the server.* settings
+     * @return Server without handler, not yet started
+     */
+    public static Server createServer(int port, ApplicationProperties properties) {
+        Server server = new Server(createThreadPool(properties));
+        HttpConfiguration httpConfig = createHttpConfiguration(properties);
+        boolean http2 = properties.getBoolean("server.http2.enabled", true);
+        
+        server.addConnector(createConnector(server, port, properties,
+            cleartextFactories(httpConfig, http2, properties)));
+        
+        if (properties.getBoolean("server.ssl.enabled", false)) {
+            server.addConnector(createSslConnector(server, httpConfig, http2, properties));
+        }
+        if (properties.getBoolean("server.unix.socket.enabled", false)) {
+            server.addConnector(createUnixSocketConnector(server, properties,
+                cleartextFactories(httpConfig, http2, properties)));
+        }
+        return server;
+    }
+    
+    static QueuedThreadPool createThreadPool(ApplicationProperties properties) {
+        int maxThreads = properties.getInt("server.threads.max", 200);
+        int minThreads = properties.getInt("server.threads.min", 8);
+        if (minThreads > maxThreads) {
+            logger.warn("server.threads.min ({}) is above server.threads.max, using {}", minThreads, maxThreads);
+            minThreads = maxThreads;
+        }
+        int idleTimeout = properties.getInt("server.threads.idle.timeout.ms", 60000);
+        
+        QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads, minThreads, idleTimeout);
+        threadPool.setName("http");
+        return threadPool;
+    }
+    
+    private static HttpConfiguration createHttpConfiguration(ApplicationProperties properties) {
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        httpConfig.setOutputBufferSize(properties.getInt("server.output.buffer.size", 32768));
+        return httpConfig;
+    }
+    
+    // A new set per connector: connection factories are managed by their connector
+    private static List<ConnectionFactory> cleartextFactories(HttpConfiguration httpConfig, boolean http2,
+                                                              ApplicationProperties properties) {
+        List<ConnectionFactory> factories = new ArrayList<>();
+        factories.add(new HttpConnectionFactory(httpConfig));
+        if (http2) {
+            factories.add(configure(new HTTP2CServerConnectionFactory(httpConfig), properties));
+        }
+        return factories;
+    }
+    
+    private static ServerConnector createConnector(Server server, int port, ApplicationProperties properties,
+                                                   List<ConnectionFactory> factories) {
+        // -1 lets Jetty pick the number from the available CPUs
+        ServerConnector connector = new ServerConnector(server,
+            properties.getInt("server.acceptors", -1),
+            properties.getInt("server.selectors", -1),
+            factories.toArray(new ConnectionFactory[0]));
+        connector.setPort(port);
+        connector.setIdleTimeout(properties.getLong("server.idle.timeout.ms", 30000));
+        // 0 uses the operating system's default backlog
+        connector.setAcceptQueueSize(properties.getInt("server.accept.queue.size", 0));
+        return connector;
+    }
+    
+    private static ServerConnector createSslConnector(Server server, HttpConfiguration httpConfig, boolean http2,
+                                                      ApplicationProperties properties) {
+        String keyStorePath = properties.getString("server.ssl.keystore.path", null);
+        if (keyStorePath == null || keyStorePath.isEmpty()) {
+            throw new IllegalStateException("server.ssl.enabled needs server.ssl.keystore.path");
+        }
+        SslContextFactory.Server sslContextFactory = new SslContextFactory.Server();
+        sslContextFactory.setKeyStorePath(keyStorePath);
+        sslContextFactory.setKeyStoreType(properties.getString("server.ssl.keystore.type", "PKCS12"));
+        sslContextFactory.setKeyStorePassword(properties.getString("server.ssl.keystore.password", ""));
+        
+        HttpConfiguration httpsConfig = new HttpConfiguration(httpConfig);
+        httpsConfig.addCustomizer(new SecureRequestCustomizer());
+        HttpConnectionFactory http11 = new HttpConnectionFactory(httpsConfig);
+        
+        List<ConnectionFactory> factories = new ArrayList<>();
+        if (http2) {
+            // HTTP/2 forbids some older cipher suites, prefer the allowed ones
+            sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+            ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory();
+            alpn.setDefaultProtocol(http11.getProtocol());
+            factories.add(new SslConnectionFactory(sslContextFactory, alpn.getProtocol()));
+            factories.add(alpn);
+            factories.add(configure(new HTTP2ServerConnectionFactory(httpsConfig), properties));
+        } else {
+            factories.add(new SslConnectionFactory(sslContextFactory, http11.getProtocol()));
+        }
+        factories.add(http11);
+        return createConnector(server, properties.getInt("server.ssl.port", 8443), properties, factories);
+    }
+    
+    private static UnixSocketConnector createUnixSocketConnector(Server server, ApplicationProperties properties,
+                                                                 List<ConnectionFactory> factories) {
+        UnixSocketConnector connector = new StaleSocketRemovingConnector(server,
+            properties.getInt("server.selectors", -1),
+            factories.toArray(new ConnectionFactory[0]));
+        connector.setUnixSocket(properties.getString("server.unix.socket.path", "/tmp/dbh-rest-training.sock"));
+        connector.setIdleTimeout(properties.getLong("server.idle.timeout.ms", 30000));
+        connector.setAcceptQueueSize(properties.getInt("server.accept.queue.size", 0));
+        return connector;
+    }
+    
+    /**
+     * A process that was killed leaves its socket file behind, and binding
+     * to an existing file fails with "Address already in use". The file is
+     * only removed if it is a socket that nobody accepts connections on any
+     * more; anything else at the path is left alone and stops the start.
+     */
+    private static void removeStaleUnixSocket(String path) {
+        Path socketPath = Paths.get(path);
+        if (!Files.exists(socketPath, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        if (!isSocket(socketPath)) {
+            throw new IllegalStateException("server.unix.socket.path " + path + " exists and is not a socket");
+        }
+        if (isListening(socketPath)) {
+            throw new IllegalStateException("server.unix.socket.path " + path + " is in use by another process");
+        }
+        try {
+            Files.delete(socketPath);
+            logger.info("Removed stale Unix socket {}", path);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not remove stale Unix socket " + path, e);
+        }
+    }
+    
+    private static boolean isListening(Path socketPath) {
+        UnixSocketChannel channel;
+        try {
+            channel = UnixSocketChannel.open(new UnixSocketAddress(socketPath.toFile()));
+        } catch (IOException refused) {
+            return false;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // The connect already answered the question
+        }
+        return true;
+    }
+    
+    private static boolean isSocket(Path path) {
+        try {
+            // File type bits of st_mode, S_IFSOCK is 0140000
+            int mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+            return (mode & 0170000) == 0140000;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+    
+    private static <T extends AbstractHTTP2ServerConnectionFactory> T configure(T http2,
+                                                                                ApplicationProperties properties) {
+        // Requests a client may have in flight on one connection
+        http2.setMaxConcurrentStreams(properties.getInt("server.http2.max.concurrent.streams", 128));
+        return http2;
+    }
+    
+    /**
+     * Removes a stale socket file right before binding, see
+     * removeStaleUnixSocket(). Doing it on start rather than while the
+     * server is built means that a server that is only configured, e.g. in
+     * a test or a tool, never touches the socket of a running one.
+     */
+    private static final class StaleSocketRemovingConnector extends UnixSocketConnector {
+        
+        StaleSocketRemovingConnector(Server server, int selectors, ConnectionFactory... factories) {
+            super(server, selectors, factories);
+        }
+        
+        @Override
+        public void open() throws IOException {
+            if (!isOpen()) {
+                removeStaleUnixSocket(getUnixSocket());
+            }
+            super.open();
+        }
+    }
+    
+    /**
+     * Live thread pool usage, e.g. for a health endpoint.
+     * 
+     * @param threadPool The server's thread pool
+     * @return Thread counts and the utilization rate (0.0 to 1.0)
+     */
+    public static Map<String, Object> threadPoolStats(QueuedThreadPool threadPool) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("minThreads", threadPool.getMinThreads());
+        stats.put("maxThreads", threadPool.getMaxThreads());
+        stats.put("threads", threadPool.getThreads());
+        // Acceptors and selectors
+        stats.put("leased", threadPool.getLeasedThreads());
+        // Running requests
+        stats.put("utilized", threadPool.getUtilizedThreads());
+        stats.put("idle", threadPool.getIdleThreads());
+        stats.put("queued", threadPool.getQueueSize());
+        // utilized / (maxThreads - leased)
+        stats.put("utilization", threadPool.getUtilizationRate());
+        stats.put("lowOnThreads", threadPool.isLowOnThreads());
+        return stats;
+    }
+}
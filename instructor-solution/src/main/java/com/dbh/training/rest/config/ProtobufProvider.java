@@ -0,0 +1,151 @@
+package com.dbh.training.rest.config;
+
+import com.dbh.training.rest.models.User;
+import com.dbh.training.rest.proto.UserListMessage;
+import com.dbh.training.rest.proto.UserMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Timestamp;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+
+/**
+ * Reads and writes users as Protocol Buffers (application/x-protobuf).
+ * 
+ * The schema is src/main/proto/user.proto; the message classes are
+ * generated by the protobuf Gradle plugin. A single user maps to
+ * UserMessage, a list of users to UserListMessage. Other entity types
+ * have no protobuf schema, so resources only offer this media type on
+ * endpoints that return users.
+ * 
+ * createdAt is sent as a google.protobuf.Timestamp in UTC.
+ */
+@Produces(ProtobufProvider.PROTOBUF)
+@Consumes(ProtobufProvider.PROTOBUF)
+public class ProtobufProvider implements MessageBodyReader<User>, MessageBodyWriter<Object> {
+    
+    public static final String PROTOBUF = "application/x-protobuf";
+    public static final MediaType PROTOBUF_TYPE = MediaType.valueOf(PROTOBUF);
+    
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type == User.class && PROTOBUF_TYPE.isCompatible(mediaType);
+    }
+    
+    @Override
+    public User readFrom(Class<User> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                         MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        try {
+            return toUser(UserMessage.parseFrom(entityStream));
+        } catch (InvalidProtocolBufferException e) {
+            throw new BadRequestException("Invalid protobuf message: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        if (!PROTOBUF_TYPE.isCompatible(mediaType)) {
+            return false;
+        }
+        if (type == User.class) {
+            return true;
+        }
+        if (!Collection.class.isAssignableFrom(type)) {
+            return false;
+        }
+        // Entities wrapped in a Response lose their element type, so a raw
+        // collection is accepted and checked element by element in writeTo
+        if (genericType instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+            return arguments.length == 1 && arguments[0] == User.class;
+        }
+        return true;
+    }
+    
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        if (value instanceof User) {
+            toMessage((User) value).writeTo(entityStream);
+            return;
+        }
+        UserListMessage.Builder list = UserListMessage.newBuilder();
+        for (Object element : (Collection<?>) value) {
+            if (!(element instanceof User)) {
+                throw new IllegalArgumentException("Cannot write " + element.getClass().getName() + " as protobuf");
+            }
+            list.addUsers(toMessage((User) element));
+        }
+        list.build().writeTo(entityStream);
+    }
+    
+    static UserMessage toMessage(User user) {
+        UserMessage.Builder message = UserMessage.newBuilder();
+        if (user.getId() != null) {
+            message.setId(user.getId());
+        }
+        if (user.getUsername() != null) {
+            message.setUsername(user.getUsername());
+        }
+        if (user.getEmail() != null) {
+            message.setEmail(user.getEmail());
+        }
+        if (user.getFirstName() != null) {
+            message.setFirstName(user.getFirstName());
+        }
+        if (user.getLastName() != null) {
+            message.setLastName(user.getLastName());
+        }
+        if (user.getVersion() != null) {
+            message.setVersion(user.getVersion());
+        }
+        LocalDateTime createdAt = user.getCreatedAt();
+        if (createdAt != null) {
+            message.setCreatedAt(Timestamp.newBuilder()
+                .setSeconds(createdAt.toEpochSecond(ZoneOffset.UTC))
+                .setNanos(createdAt.getNano()));
+        }
+        return message.build();
+    }
+    
+    static User toUser(UserMessage message) {
+        User user = new User();
+        if (message.hasId()) {
+            user.setId(message.getId());
+        }
+        if (message.hasUsername()) {
+            user.setUsername(message.getUsername());
+        }
+        if (message.hasEmail()) {
+            user.setEmail(message.getEmail());
+        }
+        if (message.hasFirstName()) {
+            user.setFirstName(message.getFirstName());
+        }
+        if (message.hasLastName()) {
+            user.setLastName(message.getLastName());
+        }
+        if (message.hasVersion()) {
+            user.setVersion(message.getVersion());
+        }
+        if (message.hasCreatedAt()) {
+            Timestamp createdAt = message.getCreatedAt();
+            user.setCreatedAt(LocalDateTime.ofEpochSecond(createdAt.getSeconds(), createdAt.getNanos(), ZoneOffset.UTC));
+        }
+        return user;
+    }
+}
@@ -0,0 +1,23 @@
+package com.dbh.training.rest.config;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Reads and writes entities as Smile, Jackson's binary JSON
+ * (Accept / Content-Type: application/x-jackson-smile).
+ */
+@Produces(SmileProvider.SMILE)
+@Consumes(SmileProvider.SMILE)
+public class SmileProvider extends BinaryJacksonProvider {
+    
+    public static final String SMILE = "application/x-jackson-smile";
+    public static final MediaType SMILE_TYPE = MediaType.valueOf(SMILE);
+    
+    public SmileProvider() {
+        super(SMILE_TYPE, new SmileFactory());
+    }
+}
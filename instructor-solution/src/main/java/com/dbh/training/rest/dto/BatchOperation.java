@@ -0,0 +1,55 @@
+package com.dbh.training.rest.dto;
+
+import com.dbh.training.rest.models.User;
+
+/**
+ * One entry of a POST /users/batch request.
+ * 
+ * - create: user is required, id is ignored
+ * - update: id and user are required
+ * - delete: id is required
+ */
+public class BatchOperation {
+    
+    public static final String CREATE = "create";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+    
+    private String op;
+    private Long id;
+    private User user;
+    
+    public BatchOperation() {
+    }
+    
+    public BatchOperation(String op, Long id, User user) {
+        this.op = op;
+        this.id = id;
+        this.user = user;
+    }
+    
+    // Getters and Setters
+    public String getOp() {
+        return op;
+    }
+    
+    public void setOp(String op) {
+        this.op = op;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public User getUser() {
+        return user;
+    }
+    
+    public void setUser(User user) {
+        this.user = user;
+    }
+}
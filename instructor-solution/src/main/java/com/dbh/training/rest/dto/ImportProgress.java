@@ -0,0 +1,63 @@
+package com.dbh.training.rest.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One progress line of a POST /users/import response.
+ * 
+ * Counts are cumulative. errors only lists the problems found since the
+ * previous line. The last line has done=true.
+ */
+public class ImportProgress {
+    
+    private long processed;
+    private long created;
+    private long failed;
+    private boolean done;
+    private List<String> errors = new ArrayList<>();
+    
+    public ImportProgress() {
+    }
+    
+    // Getters and Setters
+    public long getProcessed() {
+        return processed;
+    }
+    
+    public void setProcessed(long processed) {
+        this.processed = processed;
+    }
+    
+    public long getCreated() {
+        return created;
+    }
+    
+    public void setCreated(long created) {
+        this.created = created;
+    }
+    
+    public long getFailed() {
+        return failed;
+    }
+    
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+    
+    public boolean isDone() {
+        return done;
+    }
+    
+    public void setDone(boolean done) {
+        this.done = done;
+    }
+    
+    public List<String> getErrors() {
+        return errors;
+    }
+    
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+}
@@ -0,0 +1,69 @@
+package com.dbh.training.rest.dto;
+
+/**
+ * One write to the user store, as listed by GET /users/changes and pushed
+ * by GET /users/events.
+ * 
+ * version is the store version the write produced; userVersion is the
+ * version of the user after the write (absent for deletes). Clients fetch
+ * created and updated users with GET /users/{id}.
+ * 
+ * The event stream also sends "reset" (id 0) when the store was cleared or
+ * a resumed stream can't be continued: the client has to read the full
+ * list again.
+ */
+public class UserChange {
+    
+    public static final String CREATE = "create";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+    public static final String RESET = "reset";
+    
+    private long version;
+    private long id;
+    private String op;
+    private Long userVersion;
+    
+    public UserChange() {
+    }
+    
+    public UserChange(long version, long id, String op, Long userVersion) {
+        this.version = version;
+        this.id = id;
+        this.op = op;
+        this.userVersion = userVersion;
+    }
+    
+    // Getters and Setters
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
+    public long getId() {
+        return id;
+    }
+    
+    public void setId(long id) {
+        this.id = id;
+    }
+    
+    public String getOp() {
+        return op;
+    }
+    
+    public void setOp(String op) {
+        this.op = op;
+    }
+    
+    public Long getUserVersion() {
+        return userVersion;
+    }
+    
+    public void setUserVersion(Long userVersion) {
+        this.userVersion = userVersion;
+    }
+}
@@ -0,0 +1,51 @@
+package com.dbh.training.rest.dto;
+
+import java.util.List;
+
+/**
+ * Response of GET /users/changes: the changes after the requested version
+ * and the version to ask from next time.
+ * 
+ * hasMore is true when the response was cut off at the limit; the client
+ * then asks again right away with since=version.
+ */
+public class UserChanges {
+    
+    private long version;
+    private boolean hasMore;
+    private List<UserChange> changes;
+    
+    public UserChanges() {
+    }
+    
+    public UserChanges(long version, boolean hasMore, List<UserChange> changes) {
+        this.version = version;
+        this.hasMore = hasMore;
+        this.changes = changes;
+    }
+    
+    // Getters and Setters
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
+    public boolean isHasMore() {
+        return hasMore;
+    }
+    
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+    
+    public List<UserChange> getChanges() {
+        return changes;
+    }
+    
+    public void setChanges(List<UserChange> changes) {
+        this.changes = changes;
+    }
+}
@@ -0,0 +1,139 @@
+package com.dbh.training.rest.filters;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limit on the number of requests in progress that adapts to the observed
+ * latency (AIMD, as TCP congestion control does with its window).
+ * 
+ * - Additive increase: a request that completes within the latency target
+ *   while the limit is actually in use raises the limit by 1/limit, i.e.
+ *   by about one per round of requests
+ * - Multiplicative decrease: a request slower than the target (or answered
+ *   503 by the executor) cuts the limit by the backoff ratio
+ * 
+ * When the server is overloaded, extra concurrency only adds queueing, so
+ * latency grows and the limit shrinks until requests are fast again. The
+ * requests above the limit are rejected right away instead of queueing.
+ * 
+ * All requests in flight when the limit is cut were admitted under the old
+ * limit and are probably slow too; they do not cut it again. Otherwise one
+ * burst would drive the limit straight to the minimum.
+ */
+public class AdaptiveConcurrencyLimit {
+    
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final double backoffRatio;
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    // Read on every request without locking
+    private volatile int currentLimit;
+    // Guarded by this
+    private double limit;
+    private long lastDecrease = System.nanoTime();
+    
+    /**
+     * @param enabled False admits every request
+     * @param initialLimit Limit before any latency was observed
+     * @param minLimit The limit never drops below this
+     * @param maxLimit The limit never grows above this
+     * @param latencyTargetMillis Requests slower than this cut the limit
+     * @param backoffRatio Factor applied on a cut (e.g. 0.9)
+     */
+    public AdaptiveConcurrencyLimit(boolean enabled, int initialLimit, int minLimit, int maxLimit,
+                                    long latencyTargetMillis, double backoffRatio) {
+        this.enabled = enabled;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis);
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.currentLimit = (int) limit;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Admit a request if fewer than the limit are in flight.
+     * 
+     * @return True if admitted; the caller must then call {@link #release} or {@link #releaseWithoutSample}
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= currentLimit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Complete an admitted request and adapt the limit to its latency.
+     * 
+     * @param startNanos System.nanoTime() when the request was admitted
+     * @param overloaded True if the request failed because the server was overloaded
+     */
+    public void release(long startNanos, boolean overloaded) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (overloaded || now - startNanos > latencyTargetNanos) {
+                if (startNanos - lastDecrease > 0) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecrease = now;
+                }
+            } else if (inFlightBefore * 2 >= limit) {
+                // Only grow when the limit is what holds requests back
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            currentLimit = (int) limit;
+        }
+    }
+    
+    /**
+     * Complete an admitted request without adapting the limit, for requests
+     * whose duration says nothing about load (e.g. a transfer that goes at
+     * the client's pace).
+     */
+    public void releaseWithoutSample() {
+        inFlight.decrementAndGet();
+    }
+    
+    public int getLimit() {
+        return currentLimit;
+    }
+    
+    public int getInFlight() {
+        return inFlight.get();
+    }
+    
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+    
+    /**
+     * @return Current limit, requests in flight and rejections, e.g. for a health endpoint
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("limit", currentLimit);
+        stats.put("inFlight", inFlight.get());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,154 @@
+package com.dbh.training.rest.filters;
+
+import com.dbh.training.rest.resources.HealthResource;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Load shedding: rejects requests with 503 Service Unavailable and
+ * Retry-After once the AdaptiveConcurrencyLimit is reached, so the requests
+ * that are admitted keep a bounded latency instead of all of them queueing.
+ * 
+ * Health checks (HealthResource) are always admitted and not counted: a
+ * load balancer that sees them fail would take the instance out while it
+ * is merely busy.
+ * Server-Sent Events streams are not limited either; they stay open for
+ * minutes and their "latency" says nothing about load.
+ * 
+ * The slot is released as soon as the response filters have run, before
+ * the entity is written, which is why the filter is also an event listener.
+ * Requests that end with an unmapped exception never get there and are
+ * released when Jersey reports them as finished.
+ * Streamed responses (StreamingOutput: /users/export, and /users/import,
+ * whose body is read while the response streams) do their work while the
+ * entity is written, so they keep their slot until they are finished. That
+ * transfer goes at the client's pace, so its duration is left out of the
+ * latency that adapts the limit.
+ * Registered as an instance in JerseyConfig so both roles share the limit.
+ */
+@Priority(Priorities.AUTHENTICATION - 100)
+public class AdmissionControlFilter implements ContainerRequestFilter, ApplicationEventListener {
+    
+    private static final String START_PROPERTY = "admission.start";
+    
+    private final AdaptiveConcurrencyLimit limit;
+    private final int retryAfterSeconds;
+    
+    @Context
+    private ResourceInfo resourceInfo;
+    
+    /**
+     * @param limit The shared concurrency limit
+     * @param retryAfterSeconds Retry-After sent with 503 responses
+     */
+    public AdmissionControlFilter(AdaptiveConcurrencyLimit limit, int retryAfterSeconds) {
+        this.limit = limit;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        if (!limit.isEnabled()
+                || resourceInfo.getResourceClass() == HealthResource.class
+                || isStream()) {
+            return;
+        }
+        if (limit.tryAcquire()) {
+            requestContext.setProperty(START_PROPERTY, System.nanoTime());
+        } else {
+            requestContext.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .entity("Server overloaded, retry later")
+                .build());
+        }
+    }
+    
+    @Override
+    public void onEvent(ApplicationEvent event) {
+        // Only requests are of interest
+    }
+    
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return limit.isEnabled() ? new Admission() : null;
+    }
+    
+    private boolean isStream() {
+        Method method = resourceInfo.getResourceMethod();
+        Produces produces = method != null ? method.getAnnotation(Produces.class) : null;
+        return produces != null && Arrays.asList(produces.value()).contains(MediaType.SERVER_SENT_EVENTS);
+    }
+    
+    /**
+     * Follows one request. The request properties are no longer available
+     * when an async request finishes, so the start time is copied as soon as
+     * the filters have run.
+     */
+    private final class Admission implements RequestEventListener {
+        
+        private long start;
+        private boolean admitted;
+        private boolean streaming;
+        
+        @Override
+        public void onEvent(RequestEvent event) {
+            switch (event.getType()) {
+                case REQUEST_FILTERED:
+                    Object admittedAt = event.getContainerRequest().getProperty(START_PROPERTY);
+                    if (admittedAt != null) {
+                        start = (Long) admittedAt;
+                        admitted = true;
+                    }
+                    break;
+                case RESP_FILTERS_FINISHED:
+                    ContainerResponse response = event.getContainerResponse();
+                    if (response == null) {
+                        break;
+                    }
+                    if (response.getEntity() instanceof StreamingOutput) {
+                        // The work is done while the entity is written
+                        streaming = true;
+                    } else {
+                        // e.g. the ResourceExecutor's queue was full
+                        release(response.getStatus() == Response.Status.SERVICE_UNAVAILABLE.getStatusCode());
+                    }
+                    break;
+                case FINISHED:
+                    release(false);
+                    break;
+                default:
+                    break;
+            }
+        }
+        
+        private void release(boolean overloaded) {
+            if (!admitted) {
+                return;
+            }
+            admitted = false;
+            if (streaming) {
+                limit.releaseWithoutSample();
+            } else {
+                limit.release(start, overloaded);
+            }
+        }
+    }
+}
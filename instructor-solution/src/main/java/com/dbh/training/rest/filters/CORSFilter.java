@@ -35,7 +35,7 @@ public class CORSFilter implements ContainerResponseFilter {
         
         // Expose specific headers to the client
         responseContext.getHeaders().add("Access-Control-Expose-Headers",
-            "Location, Content-Disposition, X-Total-Count");
+            "Location, Content-Disposition, X-Total-Count, X-Total-Count-Estimated");
         
         // Allow credentials (cookies, authorization headers)
         // Note: When using credentials, Access-Control-Allow-Origin cannot be "*"
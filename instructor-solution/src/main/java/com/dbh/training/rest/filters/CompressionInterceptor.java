@@ -0,0 +1,242 @@
+package com.dbh.training.rest.filters;
+
+import com.dbh.training.rest.config.ApplicationProperties;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * gzip compression of response bodies, negotiated with Accept-Encoding.
+ * 
+ * The entity is serialized into a buffer first, so bodies below
+ * compression.min.size.bytes are sent as they are: for small responses the
+ * gzip header and CPU time cost more than they save.
+ * 
+ * Compressing is far more expensive than serializing, and list responses
+ * are often requested again while the data hasn't changed. The compressed
+ * bytes of collection responses are therefore kept in a small LRU cache,
+ * keyed by their ETag (the store version), media type and request URI: an
+ * unchanged snapshot is only compressed once. Responses without an ETag
+ * (and pretty-printed ones) are compressed every time.
+ * 
+ * Streaming responses (StreamingOutput, e.g. /users/export) are left
+ * alone, because buffering them would defeat the streaming.
+ * 
+ * The gzip body is a different representation, so it gets its own strong
+ * ETag: "--gzip" is appended, and stripped again from If-Match /
+ * If-None-Match before resources compare tags (the same scheme as Jetty's
+ * GzipHandler). A 304 Not Modified for a client that holds the gzip
+ * variant carries that variant's ETag again.
+ * 
+ * Only gzip is offered: Brotli has no pure-Java encoder.
+ */
+@Provider
+@Priority(Priorities.ENTITY_CODER)
+public class CompressionInterceptor implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+    
+    private static final String GZIP = "gzip";
+    private static final String ETAG_SUFFIX = "--gzip";
+    // If-None-Match as sent, before the suffix was stripped
+    private static final String IF_NONE_MATCH_PROPERTY = "compression.ifNoneMatch";
+    
+    private final boolean enabled;
+    private final int minSize;
+    private final CompressedCache cache;
+    
+    @Context
+    private HttpHeaders requestHeaders;
+    
+    @Context
+    private UriInfo uriInfo;
+    
+    public CompressionInterceptor() {
+        ApplicationProperties properties = ApplicationProperties.get();
+        enabled = properties.getBoolean("compression.enabled", true);
+        minSize = properties.getInt("compression.min.size.bytes", 1024);
+        cache = new CompressedCache(properties.getInt("compression.cache.entries", 32));
+    }
+    
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        MultivaluedMap<String, String> headers = requestContext.getHeaders();
+        String ifNoneMatch = headers.getFirst(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && ifNoneMatch.contains(ETAG_SUFFIX)) {
+            requestContext.setProperty(IF_NONE_MATCH_PROPERTY, ifNoneMatch);
+        }
+        for (String name : new String[] {HttpHeaders.IF_MATCH, HttpHeaders.IF_NONE_MATCH}) {
+            String value = headers.getFirst(name);
+            if (value != null && value.contains(ETAG_SUFFIX)) {
+                headers.putSingle(name, value.replace(ETAG_SUFFIX + "\"", "\""));
+            }
+        }
+    }
+    
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object ifNoneMatch = requestContext.getProperty(IF_NONE_MATCH_PROPERTY);
+        Object etag = responseContext.getHeaders().getFirst(HttpHeaders.ETAG);
+        if (ifNoneMatch == null || etag == null
+                || responseContext.getStatus() != Response.Status.NOT_MODIFIED.getStatusCode()) {
+            return;
+        }
+        // The tag matched the gzip variant the client holds: confirm that one
+        EntityTag variant = gzipVariant(etag);
+        if (ifNoneMatch.toString().contains("\"" + variant.getValue() + "\"")) {
+            responseContext.getHeaders().putSingle(HttpHeaders.ETAG, variant);
+            responseContext.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+    }
+    
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        if (!enabled
+                || context.getEntity() instanceof StreamingOutput
+                || headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            context.proceed();
+            return;
+        }
+        
+        // The body depends on Accept-Encoding from here on, compressed or not
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (!acceptsGzip(requestHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING))) {
+            context.proceed();
+            return;
+        }
+        
+        OutputStream output = context.getOutputStream();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(minSize * 2);
+        context.setOutputStream(buffer);
+        context.proceed();
+        
+        byte[] body;
+        if (buffer.size() < minSize) {
+            body = buffer.toByteArray();
+        } else {
+            byte[] uncompressed = buffer.toByteArray();
+            Object etag = headers.getFirst(HttpHeaders.ETAG);
+            // Pretty-printed bodies are requested by hand, not worth a cache slot
+            body = etag != null && context.getEntity() instanceof Collection
+                    && context.getProperty(PrettyPrintFilter.PRETTY_PROPERTY) == null
+                ? cache.compress(cacheKey(etag, context), uncompressed)
+                : gzip(uncompressed);
+            headers.putSingle(HttpHeaders.CONTENT_ENCODING, GZIP);
+            if (etag != null) {
+                headers.putSingle(HttpHeaders.ETAG, gzipVariant(etag));
+            }
+        }
+        // Headers are still uncommitted: nothing has been written to output yet
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        output.write(body);
+        context.setOutputStream(output);
+    }
+    
+    // The same tag is sent for every page and filter of a list, so the request URI is part of the key
+    private String cacheKey(Object etag, WriterInterceptorContext context) {
+        return etag + " " + context.getMediaType() + " " + uriInfo.getRequestUri();
+    }
+    
+    static EntityTag gzipVariant(Object etag) {
+        EntityTag tag = etag instanceof EntityTag ? (EntityTag) etag : EntityTag.valueOf(etag.toString());
+        return new EntityTag(tag.getValue() + ETAG_SUFFIX, tag.isWeak());
+    }
+    
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase(GZIP) && !name.equals("*")) {
+                continue;
+            }
+            // gzip;q=0 explicitly refuses gzip
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 8192)) {
+            gzip.write(data);
+        }
+        return compressed.toByteArray();
+    }
+    
+    /**
+     * Compressed bodies by a key that changes whenever the uncompressed body
+     * does (see cacheKey()).
+     */
+    static final class CompressedCache {
+        
+        private final int capacity;
+        private final Map<String, byte[]> entries;
+        
+        CompressedCache(int capacity) {
+            this.capacity = capacity;
+            this.entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                    return size() > CompressedCache.this.capacity;
+                }
+            };
+        }
+        
+        byte[] compress(String key, byte[] uncompressed) throws IOException {
+            if (capacity <= 0) {
+                return gzip(uncompressed);
+            }
+            byte[] compressed;
+            synchronized (entries) {
+                compressed = entries.get(key);
+            }
+            if (compressed == null) {
+                // Compress outside the lock; two threads may race, both results are valid
+                compressed = gzip(uncompressed);
+                synchronized (entries) {
+                    entries.put(key, compressed);
+                }
+            }
+            return compressed;
+        }
+        
+        int size() {
+            synchronized (entries) {
+                return entries.size();
+            }
+        }
+    }
+}
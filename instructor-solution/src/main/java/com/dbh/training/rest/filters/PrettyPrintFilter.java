@@ -0,0 +1,114 @@
+package com.dbh.training.rest.filters;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.Providers;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.List;
+
+/**
+ * Per-request opt-in for pretty-printed JSON.
+ * 
+ * JSON is compact by default (see JacksonConfig). Clients that want
+ * indented output for debugging ask for it with either
+ * - the query parameter ?pretty=true, or
+ * - a media type parameter: Accept: application/json; pretty=true
+ * 
+ * The request filter only records the choice. The writer interceptor then
+ * writes the response itself, in place of Jersey's Jackson provider, with
+ * an ObjectWriter derived from the shared ObjectMapper (JacksonConfig) plus
+ * INDENT_OUTPUT; the mapper itself is never reconfigured. Entities that the
+ * Jackson provider would not write, e.g. String error messages or a
+ * StreamingOutput, are left to their own writer.
+ */
+@Provider
+public class PrettyPrintFilter implements ContainerRequestFilter, WriterInterceptor {
+    
+    private static final String PRETTY_PARAMETER = "pretty";
+    static final String PRETTY_PROPERTY = "json.pretty";
+    
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+    
+    @Context
+    private Providers providers;
+    
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        if (isPrettyRequested(requestContext.getUriInfo().getQueryParameters(),
+                requestContext.getAcceptableMediaTypes())) {
+            requestContext.setProperty(PRETTY_PROPERTY, Boolean.TRUE);
+        }
+    }
+    
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        if (context.getProperty(PRETTY_PROPERTY) == null
+                || !MediaType.APPLICATION_JSON_TYPE.isCompatible(context.getMediaType())) {
+            context.proceed();
+            return;
+        }
+        ObjectMapper mapper = jacksonMapper(context);
+        if (mapper == null) {
+            context.proceed();
+            return;
+        }
+        
+        // Not calling proceed() skips the Jackson provider; the stream stays
+        // open for the interceptors and the container
+        ObjectWriter writer = mapper.writerFor(mapper.constructType(context.getGenericType()))
+            .with(SerializationFeature.INDENT_OUTPUT)
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        writer.writeValue(context.getOutputStream(), context.getEntity());
+    }
+    
+    /**
+     * @return The mapper Jersey's Jackson provider would use for this entity,
+     *         or null if another writer (String, StreamingOutput, ...) handles it
+     */
+    private ObjectMapper jacksonMapper(WriterInterceptorContext context) {
+        MessageBodyWriter<?> writer = providers.getMessageBodyWriter(context.getType(),
+            context.getGenericType(), context.getAnnotations(), context.getMediaType());
+        MessageBodyWriter<?> jackson = providers.getMessageBodyWriter(JsonNode.class, JsonNode.class,
+            NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE);
+        if (writer == null || jackson == null || writer.getClass() != jackson.getClass()) {
+            return null;
+        }
+        ContextResolver<ObjectMapper> resolver =
+            providers.getContextResolver(ObjectMapper.class, context.getMediaType());
+        return resolver != null ? resolver.getContext(context.getType()) : null;
+    }
+    
+    /**
+     * @param queryParameters The request's query parameters
+     * @param acceptable The request's Accept header, parsed
+     * @return True if the request asks for pretty-printed JSON
+     */
+    public static boolean isPrettyRequested(MultivaluedMap<String, String> queryParameters,
+                                            List<MediaType> acceptable) {
+        String query = queryParameters.getFirst(PRETTY_PARAMETER);
+        if (query != null) {
+            return Boolean.parseBoolean(query);
+        }
+        for (MediaType accepted : acceptable) {
+            if (Boolean.parseBoolean(accepted.getParameters().get(PRETTY_PARAMETER))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,77 @@
+package com.dbh.training.rest.filters;
+
+import com.dbh.training.rest.models.User;
+import com.dbh.training.rest.repositories.UserResponseCache;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Serves single-user response bodies from the UserResponseCache.
+ * 
+ * On a hit the cached bytes are written directly and the entity provider
+ * (Jackson, protobuf, ...) is never called. On a miss the body is captured
+ * while it is written and stored for the next request.
+ * 
+ * Runs inside the CompressionInterceptor (higher priority value), so the
+ * cache holds uncompressed bytes and works for every Accept-Encoding.
+ * Pretty-printed responses are not cached: they are a debugging aid and
+ * would only push compact bodies out.
+ */
+@Provider
+@Priority(Priorities.USER)
+public class ResponseCacheInterceptor implements ContainerRequestFilter, WriterInterceptor {
+    
+    private static final String GENERATION_PROPERTY = "response.cache.generation";
+    
+    @Inject
+    private UserResponseCache cache;
+    
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        // Taken before the resource reads the user, see UserResponseCache.put()
+        if (cache.isEnabled() && HttpMethod.GET.equals(requestContext.getMethod())) {
+            requestContext.setProperty(GENERATION_PROPERTY, cache.generation());
+        }
+    }
+    
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        Object generation = context.getProperty(GENERATION_PROPERTY);
+        Object entity = context.getEntity();
+        if (generation == null
+                || !(entity instanceof User)
+                || context.getProperty(PrettyPrintFilter.PRETTY_PROPERTY) != null) {
+            context.proceed();
+            return;
+        }
+        User user = (User) entity;
+        if (user.getId() == null || user.getVersion() == null) {
+            context.proceed();
+            return;
+        }
+        
+        String mediaType = context.getMediaType().toString();
+        byte[] body = cache.get(user.getId(), user.getVersion(), mediaType);
+        if (body == null) {
+            OutputStream output = context.getOutputStream();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+            context.setOutputStream(buffer);
+            context.proceed();
+            context.setOutputStream(output);
+            body = buffer.toByteArray();
+            cache.put(user.getId(), user.getVersion(), mediaType, body, (Long) generation);
+        }
+        context.getOutputStream().write(body);
+    }
+}
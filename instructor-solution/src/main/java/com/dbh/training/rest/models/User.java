@@ -16,6 +16,7 @@ public class User {
     private String firstName;
     private String lastName;
     private LocalDateTime createdAt;
+    private Long version;
     
     // Default constructor (required for Jackson)
     public User() {
@@ -77,4 +78,13 @@ public class User {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+    
+    // Set by the repository: 1 on create, +1 on every update
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
\ No newline at end of file
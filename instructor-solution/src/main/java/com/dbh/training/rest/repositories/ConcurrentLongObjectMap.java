@@ -0,0 +1,323 @@
+package com.dbh.training.rest.repositories;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent hash map from primitive long keys to objects.
+ * 
+ * Compared to ConcurrentHashMap&lt;Long, V&gt; there is no boxed key and no
+ * node object per entry: each segment stores keys in a long[] and values in an
+ * Object[] (open addressing, linear probing). A lookup allocates nothing.
+ * 
+ * The map is split into lock-striped segments. Writers lock one segment;
+ * readers use an optimistic StampedLock read and only fall back to a read
+ * lock if a writer got in the way.
+ * 
+ * Null values are not allowed (a null slot marks an empty slot).
+ */
+final class ConcurrentLongObjectMap<V> {
+    
+    private static final int DEFAULT_SEGMENTS = 16;
+    private static final double LOAD_FACTOR = 0.6;
+    
+    private final Segment<V>[] segments;
+    private final int segmentShift;
+    
+    ConcurrentLongObjectMap() {
+        this(DEFAULT_SEGMENTS, 64);
+    }
+    
+    @SuppressWarnings("unchecked")
+    ConcurrentLongObjectMap(int concurrencyLevel, int initialSegmentCapacity) {
+        int segmentCount = powerOfTwoAtLeast(concurrencyLevel);
+        segments = (Segment<V>[]) new Segment<?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(initialSegmentCapacity);
+        }
+        // Segment is picked from the top bits, the slot from the low bits
+        segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+    }
+    
+    V get(long key) {
+        long hash = hash(key);
+        return segmentFor(hash).get(key, (int) hash);
+    }
+    
+    boolean containsKey(long key) {
+        return get(key) != null;
+    }
+    
+    /**
+     * @return The previous value, or null if the key was absent
+     */
+    V put(long key, V value) {
+        requireValue(value);
+        long hash = hash(key);
+        return segmentFor(hash).put(key, (int) hash, value, false);
+    }
+    
+    /**
+     * Replace the value only if the key is present.
+     * 
+     * @return The previous value, or null if the key was absent (nothing stored)
+     */
+    V replace(long key, V value) {
+        requireValue(value);
+        long hash = hash(key);
+        return segmentFor(hash).put(key, (int) hash, value, true);
+    }
+    
+    /**
+     * Replace the value only if the key currently maps to expected
+     * (compared by identity).
+     * 
+     * @return true if the value was replaced
+     */
+    boolean replace(long key, V expected, V value) {
+        requireValue(value);
+        long hash = hash(key);
+        return segmentFor(hash).replace(key, (int) hash, expected, value);
+    }
+    
+    /**
+     * @return The removed value, or null if the key was absent
+     */
+    V remove(long key) {
+        long hash = hash(key);
+        return segmentFor(hash).remove(key, (int) hash, null);
+    }
+    
+    /**
+     * Remove the entry only if the key currently maps to expected
+     * (compared by identity).
+     * 
+     * @return true if the entry was removed
+     */
+    boolean remove(long key, V expected) {
+        requireValue(expected);
+        long hash = hash(key);
+        return segmentFor(hash).remove(key, (int) hash, expected) != null;
+    }
+    
+    /**
+     * @return Number of entries (a moment-in-time estimate under concurrent writes)
+     */
+    int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+    
+    void clear() {
+        for (Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+    
+    private Segment<V> segmentFor(long hash) {
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+    
+    private static void requireValue(Object value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported");
+        }
+    }
+    
+    private static int powerOfTwoAtLeast(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+    
+    // Murmur3 finalizer: sequential ids end up well spread over segments and slots
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+    
+    /**
+     * Keys and values are swapped together on resize so a reader never sees a
+     * key array of one size and a value array of another.
+     */
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+        
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+        }
+    }
+    
+    private static final class Segment<V> {
+        
+        private final StampedLock lock = new StampedLock();
+        private final int initialCapacity;
+        private Table table;
+        volatile int size;
+        
+        Segment(int initialCapacity) {
+            this.initialCapacity = powerOfTwoAtLeast(Math.max(2, initialCapacity));
+            this.table = new Table(this.initialCapacity);
+        }
+        
+        V get(long key, int hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0L) {
+                V value = find(table, key, hash);
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return find(table, key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        
+        @SuppressWarnings("unchecked")
+        private static <V> V find(Table table, long key, int hash) {
+            long[] keys = table.keys;
+            Object[] values = table.values;
+            int mask = keys.length - 1;
+            int slot = hash & mask;
+            // Bounded so a torn optimistic read can never spin forever
+            for (int probes = 0; probes <= mask; probes++) {
+                Object value = values[slot];
+                if (value == null) {
+                    return null;
+                }
+                if (keys[slot] == key) {
+                    return (V) value;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+        
+        @SuppressWarnings("unchecked")
+        V put(long key, int hash, V value, boolean onlyIfPresent) {
+            long stamp = lock.writeLock();
+            try {
+                long[] keys = table.keys;
+                Object[] values = table.values;
+                int mask = keys.length - 1;
+                int slot = hash & mask;
+                while (values[slot] != null) {
+                    if (keys[slot] == key) {
+                        V previous = (V) values[slot];
+                        values[slot] = value;
+                        return previous;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                if (onlyIfPresent) {
+                    return null;
+                }
+                keys[slot] = key;
+                values[slot] = value;
+                size++;
+                if (size > keys.length * LOAD_FACTOR) {
+                    resize(keys.length << 1);
+                }
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        
+        boolean replace(long key, int hash, Object expected, V value) {
+            long stamp = lock.writeLock();
+            try {
+                long[] keys = table.keys;
+                Object[] values = table.values;
+                int mask = keys.length - 1;
+                int slot = hash & mask;
+                while (values[slot] != null && keys[slot] != key) {
+                    slot = (slot + 1) & mask;
+                }
+                if (values[slot] == null || values[slot] != expected) {
+                    return false;
+                }
+                values[slot] = value;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        
+        /**
+         * @param expected Only remove if the key maps to this value; null removes any value
+         */
+        @SuppressWarnings("unchecked")
+        V remove(long key, int hash, Object expected) {
+            long stamp = lock.writeLock();
+            try {
+                long[] keys = table.keys;
+                Object[] values = table.values;
+                int mask = keys.length - 1;
+                int slot = hash & mask;
+                while (values[slot] != null && keys[slot] != key) {
+                    slot = (slot + 1) & mask;
+                }
+                if (values[slot] == null || (expected != null && values[slot] != expected)) {
+                    return null;
+                }
+                V removed = (V) values[slot];
+                size--;
+                
+                // Backward-shift deletion keeps probe chains intact without tombstones
+                int gap = slot;
+                for (int next = (gap + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+                    int home = (int) hash(keys[next]) & mask;
+                    if (((next - home) & mask) >= ((next - gap) & mask)) {
+                        keys[gap] = keys[next];
+                        values[gap] = values[next];
+                        gap = next;
+                    }
+                }
+                keys[gap] = 0L;
+                values[gap] = null;
+                return removed;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        
+        void clear() {
+            long stamp = lock.writeLock();
+            try {
+                table = new Table(initialCapacity);
+                size = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        
+        private void resize(int capacity) {
+            Table resized = new Table(capacity);
+            long[] oldKeys = table.keys;
+            Object[] oldValues = table.values;
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = (int) hash(oldKeys[i]) & mask;
+                    while (resized.values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    resized.keys[slot] = oldKeys[i];
+                    resized.values[slot] = oldValues[i];
+                }
+            }
+            table = resized;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Makes any UserRepository survive restarts.
+ * 
+ * Every write is applied to the wrapped repository and appended to a
+ * memory-mapped WriteAheadLog under one lock, so log order always matches
+ * the order the writes were applied in. The caller then waits (outside the
+ * lock) for the group commit that covers its entry.
+ * 
+ * A write that cannot be logged must not stay visible. Deletes and clears
+ * are therefore appended before they are applied. Creates, updates and
+ * restores need the wrapped repository to assign the id, version and
+ * timestamps that go into the log entry; if their append fails, the
+ * previous state is put back before the error reaches the caller.
+ * 
+ * A background task periodically writes a compacted SnapshotFile and drops
+ * log segments it covers. On startup the newest snapshot is loaded and only
+ * the log tail written after it is replayed. Snapshots are taken while writes
+ * continue; this is safe because replayed entries are full-state upserts and
+ * deletes, so applying one that is already in the snapshot changes nothing.
+ * 
+ * Reads go straight to the wrapped repository.
+ */
+public class DurableUserRepository implements UserRepository, Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DurableUserRepository.class);
+    
+    private final UserRepository delegate;
+    private final Path directory;
+    private final WriteAheadLog log;
+    private final ScheduledExecutorService snapshotScheduler;
+    private final Object writeLock = new Object();
+    private final Object snapshotLock = new Object();
+    private volatile long snapshotSequence;
+    
+    // Highest sequence written by the current thread's batch, see batch()
+    private final ThreadLocal<long[]> batchSequence = new ThreadLocal<>();
+    
+    /**
+     * Recover the wrapped repository from disk and start logging.
+     * 
+     * @param delegate The repository that holds the live data (its content is replaced)
+     * @param directory Data directory for snapshots and the wal/ subdirectory
+     * @param segmentSize Size of each log segment file in bytes
+     * @param groupCommit true to acknowledge writes only after fsync
+     * @param snapshotIntervalSeconds Seconds between snapshots (0 disables them)
+     */
+    public DurableUserRepository(UserRepository delegate, Path directory, int segmentSize,
+                                 boolean groupCommit, long snapshotIntervalSeconds) throws IOException {
+        this.delegate = delegate;
+        this.directory = directory;
+        
+        long start = System.currentTimeMillis();
+        delegate.clear();
+        snapshotSequence = SnapshotFile.load(directory, delegate);
+        long lastSequence = WriteAheadLog.replay(walDirectory(), snapshotSequence, this::replay);
+        logger.info("Recovered {} users in {} ms (snapshot at {}, replayed {} log entries)",
+            delegate.count(), System.currentTimeMillis() - start,
+            snapshotSequence, lastSequence - snapshotSequence);
+        
+        this.log = new WriteAheadLog(walDirectory(), segmentSize, groupCommit, lastSequence);
+        
+        if (snapshotIntervalSeconds > 0) {
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "user-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotScheduler.scheduleWithFixedDelay(this::scheduledSnapshot,
+                snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        } else {
+            snapshotScheduler = null;
+        }
+    }
+    
+    @Override
+    public User findById(long id) {
+        return delegate.findById(id);
+    }
+    
+    @Override
+    public Iterator<User> iterateFrom(long afterId) {
+        return delegate.iterateFrom(afterId);
+    }
+    
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+    
+    @Override
+    public User create(User user) {
+        long sequence;
+        User created;
+        synchronized (writeLock) {
+            created = delegate.create(user);
+            try {
+                sequence = append(WriteAheadLog.OP_PUT, created.getId(), UserRecordCodec.encode(created));
+            } catch (RuntimeException e) {
+                revert(created.getId(), null);
+                throw e;
+            }
+        }
+        awaitDurable(sequence);
+        return created;
+    }
+    
+    @Override
+    public User update(long id, User user, long expectedVersion) {
+        long sequence;
+        User updated;
+        synchronized (writeLock) {
+            User previous = delegate.findById(id);
+            updated = delegate.update(id, user, expectedVersion);
+            if (updated == null) {
+                return null;
+            }
+            try {
+                sequence = append(WriteAheadLog.OP_PUT, id, UserRecordCodec.encode(updated));
+            } catch (RuntimeException e) {
+                revert(id, previous);
+                throw e;
+            }
+        }
+        awaitDurable(sequence);
+        return updated;
+    }
+    
+    @Override
+    public boolean delete(long id, long expectedVersion) {
+        long sequence;
+        synchronized (writeLock) {
+            // All writes hold the lock, so the checked state is the one deleted
+            User current = delegate.findById(id);
+            if (current == null) {
+                return false;
+            }
+            VersionConflictException.check(id, current.getVersion(), expectedVersion);
+            sequence = append(WriteAheadLog.OP_DELETE, id, null);
+            delegate.delete(id, expectedVersion);
+        }
+        awaitDurable(sequence);
+        return true;
+    }
+    
+    @Override
+    public void restore(User user) {
+        long sequence;
+        synchronized (writeLock) {
+            User previous = delegate.findById(user.getId());
+            delegate.restore(user);
+            try {
+                sequence = append(WriteAheadLog.OP_PUT, user.getId(), UserRecordCodec.encode(user));
+            } catch (RuntimeException e) {
+                revert(user.getId(), previous);
+                throw e;
+            }
+        }
+        awaitDurable(sequence);
+    }
+    
+    @Override
+    public long nextId() {
+        return delegate.nextId();
+    }
+    
+    /**
+     * Not logged: ids created afterwards are, and the next snapshot records
+     * the reservation itself.
+     */
+    @Override
+    public void reserveIds(long nextId) {
+        synchronized (writeLock) {
+            delegate.reserveIds(nextId);
+        }
+    }
+    
+    /**
+     * Writes inside the batch only append to the log; the thread waits once,
+     * at the end, for the group commit covering the last of them.
+     */
+    @Override
+    public <T> T batch(Supplier<T> work) {
+        if (batchSequence.get() != null) {
+            return work.get();
+        }
+        long[] lastSequence = new long[1];
+        batchSequence.set(lastSequence);
+        try {
+            return work.get();
+        } finally {
+            batchSequence.remove();
+            awaitDurable(lastSequence[0]);
+        }
+    }
+    
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+    
+    @Override
+    public void clear() {
+        long sequence;
+        synchronized (writeLock) {
+            sequence = append(WriteAheadLog.OP_CLEAR, 0L, null);
+            delegate.clear();
+        }
+        awaitDurable(sequence);
+    }
+    
+    /**
+     * Write a snapshot of the current state and drop the log segments it covers.
+     * Does nothing if there were no writes since the last snapshot.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long sequence;
+            long nextId;
+            synchronized (writeLock) {
+                sequence = log.lastSequence();
+                // Taken together: ids of users deleted before the snapshot must not come back
+                nextId = delegate.nextId();
+            }
+            if (sequence == snapshotSequence) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            long count = SnapshotFile.write(directory, sequence, nextId, delegate.iterateFrom(0L));
+            log.truncateUpTo(sequence);
+            snapshotSequence = sequence;
+            logger.info("Wrote snapshot of {} users at sequence {} in {} ms",
+                count, sequence, System.currentTimeMillis() - start);
+        }
+    }
+    
+    /**
+     * Take a final snapshot (so the next start replays nothing) and close the log.
+     */
+    @Override
+    public void close() throws IOException {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        try {
+            snapshot();
+        } finally {
+            log.close();
+        }
+    }
+    
+    // For tests: fsyncs so far
+    long logForceCount() {
+        return log.forceCount();
+    }
+    
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Snapshot failed, will retry at next interval", e);
+        }
+    }
+    
+    private void replay(byte op, long sequence, long id, ByteBuffer record) {
+        switch (op) {
+            case WriteAheadLog.OP_PUT:
+                delegate.restore(UserRecordCodec.decode(record));
+                break;
+            case WriteAheadLog.OP_DELETE:
+                delegate.delete(id);
+                break;
+            case WriteAheadLog.OP_CLEAR:
+                delegate.clear();
+                break;
+            default:
+                throw new IllegalStateException("Unknown log operation " + op + " at sequence " + sequence);
+        }
+    }
+    
+    // Puts back the state from before a write that could not be logged
+    private void revert(long id, User previous) {
+        if (previous != null) {
+            delegate.restore(previous);
+        } else {
+            delegate.delete(id);
+        }
+    }
+    
+    private long append(byte op, long id, byte[] record) {
+        try {
+            return log.append(op, id, record);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to write-ahead log", e);
+        }
+    }
+    
+    private void awaitDurable(long sequence) {
+        long[] lastSequence = batchSequence.get();
+        if (lastSequence != null) {
+            lastSequence[0] = Math.max(lastSequence[0], sequence);
+            return;
+        }
+        try {
+            log.awaitDurable(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not flush write-ahead log", e);
+        }
+    }
+    
+    private Path walDirectory() {
+        return directory.resolve("wal");
+    }
+}
@@ -0,0 +1,158 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Heap-based user repository.
+ * 
+ * This is the default storage engine. Users are kept in a primitive-keyed
+ * ConcurrentLongObjectMap, so lookups by id neither box the id nor
+ * allocate, and each entry costs far less than a ConcurrentHashMap node.
+ * Ordered scans read ids from a sorted long[] (SortedLongIds), so there is no
+ * boxed Long or skip-list node per user either.
+ */
+public class InMemoryUserRepository implements UserRepository {
+    
+    private static final int SCAN_BATCH_SIZE = 256;
+    
+    // Thread-safe storage for users
+    private final ConcurrentLongObjectMap<User> users = new ConcurrentLongObjectMap<>();
+    private final AtomicLong idGenerator = new AtomicLong(1);
+    
+    // Ordered id index so pages can be read from a cursor without copying the whole map
+    private final SortedLongIds userIds = new SortedLongIds(users::containsKey);
+    
+    @Override
+    public User findById(long id) {
+        return users.get(id);
+    }
+    
+    @Override
+    public Iterator<User> iterateFrom(long afterId) {
+        // Copies ids in small batches so the index lock is never held across user code
+        return new Iterator<User>() {
+            private final long[] ids = new long[SCAN_BATCH_SIZE];
+            private int count;
+            private int index;
+            private long lastId = afterId;
+            private boolean lastBatch;
+            private User next;
+            
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (index == count) {
+                        if (lastBatch) {
+                            return false;
+                        }
+                        count = userIds.readAfter(lastId, ids);
+                        index = 0;
+                        lastBatch = count < ids.length;
+                        if (count == 0) {
+                            return false;
+                        }
+                        lastId = ids[count - 1];
+                    }
+                    // Skips stale ids and users deleted after the batch was read
+                    next = users.get(ids[index++]);
+                }
+                return true;
+            }
+            
+            @Override
+            public User next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                User user = next;
+                next = null;
+                return user;
+            }
+        };
+    }
+    
+    @Override
+    public User create(User user) {
+        // Generate ID and set creation timestamp
+        long id = idGenerator.getAndIncrement();
+        user.setId(id);
+        user.setCreatedAt(LocalDateTime.now());
+        user.setVersion(1L);
+        
+        users.put(id, user);
+        userIds.add(id);
+        return user;
+    }
+    
+    @Override
+    public User update(long id, User user, long expectedVersion) {
+        user.setId(id);
+        // Compare-and-set on the current object, so concurrent updates never
+        // produce the same version twice
+        while (true) {
+            User current = users.get(id);
+            if (current == null) {
+                return null;
+            }
+            VersionConflictException.check(id, current.getVersion(), expectedVersion);
+            user.setVersion(current.getVersion() + 1);
+            if (users.replace(id, current, user)) {
+                return user;
+            }
+        }
+    }
+    
+    @Override
+    public boolean delete(long id, long expectedVersion) {
+        while (true) {
+            User current = users.get(id);
+            if (current == null) {
+                return false;
+            }
+            VersionConflictException.check(id, current.getVersion(), expectedVersion);
+            if (users.remove(id, current)) {
+                userIds.removed();
+                return true;
+            }
+        }
+    }
+    
+    @Override
+    public void restore(User user) {
+        long id = user.getId();
+        if (user.getVersion() == null) {
+            user.setVersion(1L);
+        }
+        if (users.put(id, user) == null) {
+            userIds.add(id);
+        }
+        idGenerator.accumulateAndGet(id + 1, Math::max);
+    }
+    
+    @Override
+    public long nextId() {
+        return idGenerator.get();
+    }
+    
+    @Override
+    public void reserveIds(long nextId) {
+        idGenerator.accumulateAndGet(nextId, Math::max);
+    }
+    
+    @Override
+    public long count() {
+        return users.size();
+    }
+    
+    @Override
+    public void clear() {
+        users.clear();
+        userIds.clear();
+        idGenerator.set(1);
+    }
+}
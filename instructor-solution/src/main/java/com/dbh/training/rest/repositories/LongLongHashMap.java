@@ -0,0 +1,151 @@
+package com.dbh.training.rest.repositories;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long to long using two primitive arrays.
+ * 
+ * Neither keys nor values are boxed and there is no per-entry node, so each
+ * entry costs 16 bytes plus free slots. Uses linear probing with backward-shift
+ * deletion (no tombstones).
+ * 
+ * Not thread-safe; callers must guard access. Key 0 is reserved as the empty
+ * marker, which is fine for user ids (they start at 1).
+ */
+final class LongLongHashMap {
+    
+    private static final long EMPTY = 0L;
+    private static final double LOAD_FACTOR = 0.6;
+    
+    private final long missingValue;
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int resizeAt;
+    
+    LongLongHashMap(int expectedSize, long missingValue) {
+        this.missingValue = missingValue;
+        allocate(tableSizeFor(expectedSize));
+    }
+    
+    long get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            long existing = keys[slot];
+            if (existing == key) {
+                return values[slot];
+            }
+            if (existing == EMPTY) {
+                return missingValue;
+            }
+        }
+    }
+    
+    boolean containsKey(long key) {
+        return get(key) != missingValue;
+    }
+    
+    /**
+     * @return The previous value, or the missing value if the key was absent
+     */
+    long put(long key, long value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            long existing = keys[slot];
+            if (existing == key) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            if (existing == EMPTY) {
+                keys[slot] = key;
+                values[slot] = value;
+                if (++size >= resizeAt) {
+                    rehash(keys.length << 1);
+                }
+                return missingValue;
+            }
+        }
+    }
+    
+    /**
+     * @return The removed value, or the missing value if the key was absent
+     */
+    long remove(long key) {
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == EMPTY) {
+                return missingValue;
+            }
+            slot = (slot + 1) & mask;
+        }
+        long removed = values[slot];
+        size--;
+        
+        // Shift following entries of the same probe chain back into the gap
+        int gap = slot;
+        for (int next = (gap + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slot(keys[next], mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = EMPTY;
+        values[gap] = 0L;
+        return removed;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, 0L);
+        size = 0;
+    }
+    
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != EMPTY) {
+                int slot = slot(key, mask);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+    
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+    
+    private static int slot(long key, int mask) {
+        // Fibonacci hashing spreads sequential ids across the table
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+    
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR <= expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
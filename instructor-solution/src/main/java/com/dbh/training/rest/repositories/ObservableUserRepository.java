@@ -0,0 +1,182 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Publishes every write to the wrapped repository to UserChangeListeners.
+ * 
+ * Writes are serialized so listeners see changes in exactly the order they
+ * were applied, together with the previous state of the user. This is what
+ * keeps derived data such as the UserIndex consistent with the store.
+ * Reads go straight to the wrapped repository.
+ * 
+ * Only the write itself and the listener calls run under the lock. Each
+ * write is a batch of the wrapped repository, so anything it does once per
+ * batch happens after the lock is released: a DurableUserRepository waits
+ * for its fsync there, and concurrent writers share one fsync instead of
+ * queueing behind each other's.
+ */
+public class ObservableUserRepository implements UserRepository {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ObservableUserRepository.class);
+    
+    private final UserRepository delegate;
+    private final List<UserChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object writeLock = new Object();
+    
+    public ObservableUserRepository(UserRepository delegate) {
+        this.delegate = delegate;
+    }
+    
+    public void addListener(UserChangeListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeListener(UserChangeListener listener) {
+        listeners.remove(listener);
+    }
+    
+    @Override
+    public User findById(long id) {
+        return delegate.findById(id);
+    }
+    
+    @Override
+    public Iterator<User> iterateFrom(long afterId) {
+        return delegate.iterateFrom(afterId);
+    }
+    
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+    
+    @Override
+    public User create(User user) {
+        return serialized(() -> {
+            User created = delegate.create(user);
+            for (UserChangeListener listener : listeners) {
+                try {
+                    listener.userCreated(created);
+                } catch (RuntimeException e) {
+                    logger.error("Listener {} failed on create of user {}", listener, created.getId(), e);
+                }
+            }
+            return created;
+        });
+    }
+    
+    @Override
+    public User update(long id, User user, long expectedVersion) {
+        return serialized(() -> {
+            User previous = delegate.findById(id);
+            if (previous == null) {
+                return null;
+            }
+            User updated = delegate.update(id, user, expectedVersion);
+            if (updated != null) {
+                fireUpdated(previous, updated);
+            }
+            return updated;
+        });
+    }
+    
+    @Override
+    public boolean delete(long id, long expectedVersion) {
+        return serialized(() -> {
+            User previous = delegate.findById(id);
+            if (previous == null || !delegate.delete(id, expectedVersion)) {
+                return false;
+            }
+            for (UserChangeListener listener : listeners) {
+                try {
+                    listener.userDeleted(previous);
+                } catch (RuntimeException e) {
+                    logger.error("Listener {} failed on delete of user {}", listener, id, e);
+                }
+            }
+            return true;
+        });
+    }
+    
+    @Override
+    public void restore(User user) {
+        serialized(() -> {
+            User previous = delegate.findById(user.getId());
+            delegate.restore(user);
+            for (UserChangeListener listener : listeners) {
+                try {
+                    listener.userRestored(previous, user);
+                } catch (RuntimeException e) {
+                    logger.error("Listener {} failed on restore of user {}", listener, user.getId(), e);
+                }
+            }
+            return null;
+        });
+    }
+    
+    @Override
+    public long nextId() {
+        return delegate.nextId();
+    }
+    
+    @Override
+    public void reserveIds(long nextId) {
+        delegate.reserveIds(nextId);
+    }
+    
+    @Override
+    public <T> T batch(Supplier<T> work) {
+        return delegate.batch(work);
+    }
+    
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+    
+    @Override
+    public void clear() {
+        serialized(() -> {
+            delegate.clear();
+            for (UserChangeListener listener : listeners) {
+                try {
+                    listener.usersCleared();
+                } catch (RuntimeException e) {
+                    logger.error("Listener {} failed on clear", listener, e);
+                }
+            }
+            return null;
+        });
+    }
+    
+    /**
+     * Run one write and its listener calls under the lock, inside a batch of
+     * the wrapped repository so the batch's closing work runs after the lock.
+     */
+    private <T> T serialized(Supplier<T> write) {
+        return delegate.batch(() -> {
+            synchronized (writeLock) {
+                return write.get();
+            }
+        });
+    }
+    
+    private void fireUpdated(User previous, User current) {
+        for (UserChangeListener listener : listeners) {
+            try {
+                listener.userUpdated(previous, current);
+            } catch (RuntimeException e) {
+                logger.error("Listener {} failed on update of user {}", listener, current.getId(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * User repository that keeps records outside the garbage-collected heap.
+ * 
+ * Users are encoded with UserRecordCodec and appended to large direct
+ * ByteBuffer slabs. A primitive long-to-long map points from id to the
+ * record's location, and a sorted primitive id array serves ordered scans.
+ * The heap only holds a few arrays, no matter how many users are stored, so
+ * the GC has almost nothing to trace.
+ * 
+ * Updates append a new record and deletes just drop the index entry; the
+ * slabs are compacted once more than half of their bytes are dead.
+ */
+public class OffHeapUserRepository implements UserRepository {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapUserRepository.class);
+    
+    public static final int DEFAULT_SLAB_SIZE = 64 * 1024 * 1024;
+    
+    private static final long MISSING = -1L;
+    private static final int LENGTH_PREFIX = 4;
+    private static final int SCAN_BATCH_SIZE = 256;
+    
+    private final int slabSize;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong idGenerator = new AtomicLong(1);
+    
+    // Location of every live record: (slab index << 32) | position in slab
+    private final LongLongHashMap offsets = new LongLongHashMap(1024, MISSING);
+    private List<ByteBuffer> slabs = new ArrayList<>();
+    private long usedBytes;
+    private long deadBytes;
+    
+    // Sorted ids for paging; deleted ids stay as stale entries until the next compaction
+    private long[] orderedIds = new long[1024];
+    private int orderedSize;
+    private int staleIds;
+    
+    public OffHeapUserRepository() {
+        this(DEFAULT_SLAB_SIZE);
+    }
+    
+    public OffHeapUserRepository(int slabSize) {
+        if (slabSize < 1024) {
+            throw new IllegalArgumentException("Slab size must be at least 1024 bytes");
+        }
+        this.slabSize = slabSize;
+    }
+    
+    @Override
+    public User findById(long id) {
+        lock.readLock().lock();
+        try {
+            long offset = offsets.get(id);
+            return offset == MISSING ? null : read(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public Iterator<User> iterateFrom(long afterId) {
+        // Reads in small batches so the read lock is never held across user code
+        return new Iterator<User>() {
+            private List<User> batch = findPage(afterId, SCAN_BATCH_SIZE);
+            private int index;
+            
+            @Override
+            public boolean hasNext() {
+                if (index == batch.size() && batch.size() == SCAN_BATCH_SIZE) {
+                    batch = findPage(batch.get(index - 1).getId(), SCAN_BATCH_SIZE);
+                    index = 0;
+                }
+                return index < batch.size();
+            }
+            
+            @Override
+            public User next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.get(index++);
+            }
+        };
+    }
+    
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            List<User> page = new ArrayList<>(Math.min(limit, SCAN_BATCH_SIZE));
+            int start = Arrays.binarySearch(orderedIds, 0, orderedSize, afterId);
+            start = start >= 0 ? start + 1 : -start - 1;
+            for (int i = start; i < orderedSize && page.size() < limit; i++) {
+                long offset = offsets.get(orderedIds[i]);
+                if (offset != MISSING) {
+                    page.add(read(offset));
+                }
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public User create(User user) {
+        long id = idGenerator.getAndIncrement();
+        user.setId(id);
+        user.setCreatedAt(LocalDateTime.now());
+        user.setVersion(1L);
+        byte[] record = UserRecordCodec.encode(user);
+        
+        lock.writeLock().lock();
+        try {
+            offsets.put(id, append(record));
+            addOrderedId(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return user;
+    }
+    
+    @Override
+    public User update(long id, User user, long expectedVersion) {
+        user.setId(id);
+        byte[] record = UserRecordCodec.encode(user);
+        
+        lock.writeLock().lock();
+        try {
+            long previous = offsets.get(id);
+            if (previous == MISSING) {
+                return null;
+            }
+            long currentVersion = readVersion(previous);
+            VersionConflictException.check(id, currentVersion, expectedVersion);
+            // Encoded outside the lock; only the version is patched in here
+            UserRecordCodec.setVersion(record, currentVersion + 1);
+            user.setVersion(currentVersion + 1);
+            offsets.put(id, append(record));
+            release(previous);
+            compactIfNeeded();
+            return user;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean delete(long id, long expectedVersion) {
+        lock.writeLock().lock();
+        try {
+            long previous = offsets.get(id);
+            if (previous == MISSING) {
+                return false;
+            }
+            VersionConflictException.check(id, readVersion(previous), expectedVersion);
+            offsets.remove(id);
+            release(previous);
+            staleIds++;
+            compactIfNeeded();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public void restore(User user) {
+        long id = user.getId();
+        if (user.getVersion() == null) {
+            user.setVersion(1L);
+        }
+        byte[] record = UserRecordCodec.encode(user);
+        
+        lock.writeLock().lock();
+        try {
+            long previous = offsets.put(id, append(record));
+            if (previous != MISSING) {
+                release(previous);
+            } else {
+                addOrderedId(id);
+            }
+            idGenerator.accumulateAndGet(id + 1, Math::max);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public long nextId() {
+        return idGenerator.get();
+    }
+    
+    @Override
+    public void reserveIds(long nextId) {
+        idGenerator.accumulateAndGet(nextId, Math::max);
+    }
+    
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return offsets.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            offsets.clear();
+            slabs = new ArrayList<>();
+            usedBytes = 0;
+            deadBytes = 0;
+            orderedSize = 0;
+            staleIds = 0;
+            idGenerator.set(1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * @return Bytes of slab memory currently allocated outside the heap
+     */
+    public long allocatedBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) slabs.size() * slabSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // ----- Slab management (callers hold the write lock) -----
+    
+    private long append(byte[] record) {
+        int needed = LENGTH_PREFIX + record.length;
+        if (needed > slabSize) {
+            throw new IllegalArgumentException("User record of " + record.length
+                + " bytes does not fit into a slab of " + slabSize + " bytes");
+        }
+        ByteBuffer slab = slabs.isEmpty() ? null : slabs.get(slabs.size() - 1);
+        if (slab == null || slab.remaining() < needed) {
+            slab = ByteBuffer.allocateDirect(slabSize);
+            slabs.add(slab);
+        }
+        int position = slab.position();
+        slab.putInt(record.length);
+        slab.put(record);
+        usedBytes += needed;
+        return ((long) (slabs.size() - 1) << 32) | position;
+    }
+    
+    private User read(long offset) {
+        ByteBuffer slab = slabs.get((int) (offset >>> 32));
+        int position = (int) offset;
+        int length = slab.getInt(position);
+        
+        // Duplicate so concurrent readers don't share a position
+        ByteBuffer record = slab.duplicate();
+        record.limit(position + LENGTH_PREFIX + length);
+        record.position(position + LENGTH_PREFIX);
+        return UserRecordCodec.decode(record);
+    }
+    
+    private long readVersion(long offset) {
+        ByteBuffer slab = slabs.get((int) (offset >>> 32));
+        return UserRecordCodec.version(slab, (int) offset + LENGTH_PREFIX);
+    }
+    
+    private void release(long offset) {
+        ByteBuffer slab = slabs.get((int) (offset >>> 32));
+        deadBytes += LENGTH_PREFIX + slab.getInt((int) offset);
+    }
+    
+    private void compactIfNeeded() {
+        if (staleIds > 1024 && staleIds > orderedSize / 2) {
+            compactOrderedIds();
+        }
+        if (usedBytes > slabSize && deadBytes > usedBytes / 2) {
+            compactSlabs();
+        }
+    }
+    
+    private void compactOrderedIds() {
+        int live = 0;
+        for (int i = 0; i < orderedSize; i++) {
+            if (offsets.containsKey(orderedIds[i])) {
+                orderedIds[live++] = orderedIds[i];
+            }
+        }
+        orderedSize = live;
+        staleIds = 0;
+    }
+    
+    private void compactSlabs() {
+        long before = (long) slabs.size() * slabSize;
+        List<ByteBuffer> oldSlabs = slabs;
+        slabs = new ArrayList<>();
+        usedBytes = 0;
+        deadBytes = 0;
+        
+        for (int i = 0; i < orderedSize; i++) {
+            long id = orderedIds[i];
+            long offset = offsets.get(id);
+            if (offset == MISSING) {
+                continue;
+            }
+            ByteBuffer slab = oldSlabs.get((int) (offset >>> 32));
+            int position = (int) offset;
+            byte[] record = new byte[slab.getInt(position)];
+            ByteBuffer source = slab.duplicate();
+            source.position(position + LENGTH_PREFIX);
+            source.get(record);
+            offsets.put(id, append(record));
+        }
+        // Old direct buffers are released once they become unreachable
+        logger.debug("Compacted user slabs from {} to {} bytes",
+            before, (long) slabs.size() * slabSize);
+    }
+    
+    private void addOrderedId(long id) {
+        if (orderedSize > 0 && id <= orderedIds[orderedSize - 1]) {
+            int index = Arrays.binarySearch(orderedIds, 0, orderedSize, id);
+            if (index >= 0) {
+                // Stale entry of a deleted id that is live again
+                staleIds--;
+                return;
+            }
+            insertOrderedId(-index - 1, id);
+        } else {
+            insertOrderedId(orderedSize, id);
+        }
+    }
+    
+    private void insertOrderedId(int index, long id) {
+        if (orderedSize == orderedIds.length) {
+            orderedIds = Arrays.copyOf(orderedIds, orderedSize << 1);
+        }
+        System.arraycopy(orderedIds, index, orderedIds, index + 1, orderedSize - index);
+        orderedIds[index] = id;
+        orderedSize++;
+    }
+}
@@ -0,0 +1,128 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Adds a fixed delay to every storage call, blocking the calling thread the
+ * way a remote database or a slow disk would.
+ * 
+ * Only meant for load tests (user.store.simulated.latency.ms): it shows how
+ * the threading model copes when requests spend most of their time waiting
+ * on storage, which the in-memory engines never do.
+ * 
+ * A batch() is one round trip, as a batched statement would be: the delay
+ * is added once for the whole batch, not for each write inside it.
+ */
+public class SimulatedLatencyUserRepository implements UserRepository, Closeable {
+    
+    private final UserRepository delegate;
+    private final long latencyNanos;
+    
+    // Set while the current thread runs a batch, see batch()
+    private final ThreadLocal<Boolean> inBatch = new ThreadLocal<>();
+    
+    public SimulatedLatencyUserRepository(UserRepository delegate, long latencyMillis) {
+        this.delegate = delegate;
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+    }
+    
+    @Override
+    public User findById(long id) {
+        pause();
+        return delegate.findById(id);
+    }
+    
+    @Override
+    public Iterator<User> iterateFrom(long afterId) {
+        pause();
+        return delegate.iterateFrom(afterId);
+    }
+    
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        pause();
+        return delegate.findPage(afterId, limit);
+    }
+    
+    @Override
+    public User create(User user) {
+        pause();
+        return delegate.create(user);
+    }
+    
+    @Override
+    public User update(long id, User user, long expectedVersion) {
+        pause();
+        return delegate.update(id, user, expectedVersion);
+    }
+    
+    @Override
+    public boolean delete(long id, long expectedVersion) {
+        pause();
+        return delegate.delete(id, expectedVersion);
+    }
+    
+    @Override
+    public long nextId() {
+        return delegate.nextId();
+    }
+    
+    @Override
+    public void reserveIds(long nextId) {
+        delegate.reserveIds(nextId);
+    }
+    
+    @Override
+    public <T> T batch(Supplier<T> work) {
+        if (inBatch.get() != null) {
+            return delegate.batch(work);
+        }
+        pause();
+        inBatch.set(Boolean.TRUE);
+        try {
+            return delegate.batch(work);
+        } finally {
+            inBatch.remove();
+        }
+    }
+    
+    @Override
+    public void restore(User user) {
+        delegate.restore(user);
+    }
+    
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+    
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+    
+    private void pause() {
+        if (inBatch.get() != null) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(latencyNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compacted point-in-time copy of the user store.
+ * 
+ * A snapshot holds one UserRecordCodec record per live user, so replaying it
+ * is proportional to the number of users, not to the number of writes ever made.
+ * Files are named snapshot-&lt;sequence&gt;.dat, where sequence is the last log
+ * entry the snapshot covers. They are written to a temp file, forced to disk
+ * and then renamed, so a visible snapshot is always complete.
+ * 
+ * Layout: magic, sequence, the id generator's next id, then [length][record]
+ * per user, a -1 end marker and a CRC32 over everything before it. The next
+ * id is kept because the users alone don't tell it: the highest ids may
+ * belong to users that were deleted, and their ids must not be reused.
+ */
+final class SnapshotFile {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotFile.class);
+    
+    private static final int MAGIC = 0x55534e50; // "USNP"
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".dat";
+    
+    private SnapshotFile() {
+    }
+    
+    /**
+     * Write a snapshot and delete older ones.
+     * 
+     * @return Number of users written
+     */
+    static long write(Path directory, long sequence, long nextId, Iterator<User> users) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(fileName(sequence));
+        Path temp = directory.resolve(fileName(sequence) + ".tmp");
+        
+        long count = 0;
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 64 * 1024), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeLong(sequence);
+            out.writeLong(nextId);
+            while (users.hasNext()) {
+                byte[] record = UserRecordCodec.encode(users.next());
+                out.writeInt(record.length);
+                out.write(record);
+                count++;
+            }
+            out.writeInt(-1);
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        
+        for (Path old : snapshots(directory)) {
+            if (!old.equals(target)) {
+                Files.deleteIfExists(old);
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Load the newest intact snapshot into an empty repository.
+     * 
+     * @return The sequence covered by the loaded snapshot, or 0 if there is none
+     */
+    static long load(Path directory, UserRepository target) throws IOException {
+        List<Path> files = snapshots(directory);
+        Collections.reverse(files);
+        for (Path file : files) {
+            try {
+                long sequence = read(file, target);
+                logger.info("Loaded {} users from {}", target.count(), file.getFileName());
+                return sequence;
+            } catch (IOException e) {
+                // Checksum is only known at the end, so undo what was loaded
+                logger.warn("Ignoring unreadable snapshot {}: {}", file.getFileName(), e.getMessage());
+                target.clear();
+            }
+        }
+        return 0L;
+    }
+    
+    private static long read(Path file, UserRepository target) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 64 * 1024), crc))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot file");
+            }
+            long sequence = in.readLong();
+            long nextId = in.readLong();
+            long size = Files.size(file);
+            int length;
+            while ((length = in.readInt()) >= 0) {
+                // A corrupt length must not allocate more than the file holds
+                if (length > size) {
+                    throw new IOException("Record length " + length + " exceeds file size");
+                }
+                byte[] record = new byte[length];
+                in.readFully(record);
+                target.restore(decode(record));
+            }
+            long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Checksum mismatch");
+            }
+            target.reserveIds(nextId);
+            return sequence;
+        }
+    }
+    
+    // The checksum is only checked at the end, so a damaged record may be decoded first
+    private static User decode(byte[] record) throws IOException {
+        try {
+            return UserRecordCodec.decode(record);
+        } catch (RuntimeException e) {
+            throw new IOException("Unreadable user record: " + e.getMessage(), e);
+        }
+    }
+    
+    private static List<Path> snapshots(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+    
+    private static String fileName(long sequence) {
+        return PREFIX + String.format("%020d", sequence) + SUFFIX;
+    }
+}
@@ -0,0 +1,151 @@
+package com.dbh.training.rest.repositories;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Thread-safe ordered set of long ids backed by a single sorted long[].
+ * 
+ * Each id costs 8 bytes plus free capacity, with no boxed Long and no node
+ * objects as in a ConcurrentSkipListSet&lt;Long&gt;. Ids handed out in
+ * ascending order are appended at the end, so inserts are cheap.
+ * 
+ * Removed ids stay in the array as stale entries (the same scheme as
+ * OffHeapUserRepository.orderedIds): the owner reports each removal, and once
+ * more than half of the entries are stale the array is compacted, keeping
+ * only ids the liveness check still accepts. Readers must therefore skip ids
+ * whose value is gone.
+ */
+final class SortedLongIds {
+    
+    private static final int MIN_STALE_FOR_COMPACTION = 1024;
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongPredicate live;
+    private final int initialCapacity;
+    private long[] ids;
+    private int size;
+    
+    // Only a compaction hint: concurrent remove/re-add can make it off by a few
+    private int staleIds;
+    
+    /**
+     * @param live Tells whether an id is still present; used when compacting
+     */
+    SortedLongIds(LongPredicate live) {
+        this(live, 1024);
+    }
+    
+    SortedLongIds(LongPredicate live, int initialCapacity) {
+        this.live = live;
+        this.initialCapacity = Math.max(16, initialCapacity);
+        this.ids = new long[this.initialCapacity];
+    }
+    
+    /**
+     * Add an id. Adding an id that is still in the array (a stale entry of a
+     * removed id) revives it.
+     */
+    void add(long id) {
+        lock.writeLock().lock();
+        try {
+            if (size == 0 || id > ids[size - 1]) {
+                insert(size, id);
+                return;
+            }
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                staleIds--;
+                return;
+            }
+            insert(-index - 1, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Record that an id was removed from the owner's store. The id is dropped
+     * on the next compaction.
+     */
+    void removed() {
+        lock.writeLock().lock();
+        try {
+            staleIds++;
+            if (staleIds > MIN_STALE_FOR_COMPACTION && staleIds > size / 2) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Copy ids greater than afterId, in ascending order, into buffer.
+     * 
+     * @return Number of ids copied; less than buffer.length means no more ids follow
+     */
+    int readAfter(long afterId, long[] buffer) {
+        lock.readLock().lock();
+        try {
+            int start = Arrays.binarySearch(ids, 0, size, afterId);
+            start = start >= 0 ? start + 1 : -start - 1;
+            int count = Math.min(buffer.length, size - start);
+            System.arraycopy(ids, start, buffer, 0, count);
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * @return Number of entries, including stale ones
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            ids = new long[initialCapacity];
+            size = 0;
+            staleIds = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // ----- Callers hold the write lock -----
+    
+    private void insert(int index, long id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size << 1);
+        }
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        ids[index] = id;
+        size++;
+    }
+    
+    private void compact() {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (live.test(ids[i])) {
+                ids[kept++] = ids[i];
+            }
+        }
+        size = kept;
+        staleIds = 0;
+        // Give memory back after mass deletes, but keep room to grow
+        if (ids.length > initialCapacity && size < ids.length / 4) {
+            ids = Arrays.copyOf(ids, Math.max(initialCapacity, size << 1));
+        }
+    }
+}
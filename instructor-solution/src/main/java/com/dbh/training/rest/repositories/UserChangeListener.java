@@ -0,0 +1,42 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+
+/**
+ * Callback for writes to the user store, see ObservableUserRepository.
+ * 
+ * Callbacks run synchronously on the writing thread, in the order the writes
+ * were applied, while the store's write lock is held. Keep them short and
+ * hand anything slow off to another thread.
+ */
+public interface UserChangeListener {
+    
+    default void userCreated(User user) {
+    }
+    
+    default void userUpdated(User previous, User current) {
+    }
+    
+    default void userDeleted(User previous) {
+    }
+    
+    /**
+     * A user stored under its existing id and version by restore(). Unlike
+     * the other writes, this may bring back an (id, version) pair that was
+     * seen before with other data. Reported as the create or update it
+     * amounts to unless overridden.
+     * 
+     * @param previous The user stored under that id before, or null
+     * @param user The restored user
+     */
+    default void userRestored(User previous, User user) {
+        if (previous != null) {
+            userUpdated(previous, user);
+        } else {
+            userCreated(user);
+        }
+    }
+    
+    default void usersCleared() {
+    }
+}
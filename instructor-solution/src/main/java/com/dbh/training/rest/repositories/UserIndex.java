@@ -0,0 +1,107 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary indexes from username and email to user ids.
+ * 
+ * Registered as a listener on the ObservableUserRepository, so it is updated
+ * on every create, update and delete and lookups never scan the store.
+ * Usernames match exactly; emails are matched case-insensitively.
+ * Neither is required to be unique, so lookups return a set of ids.
+ */
+public class UserIndex implements UserChangeListener {
+    
+    private final Map<String, Set<Long>> byUsername = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> byEmail = new ConcurrentHashMap<>();
+    
+    /**
+     * Index users that were already stored before this index was registered.
+     */
+    public void rebuild(Iterator<User> users) {
+        usersCleared();
+        while (users.hasNext()) {
+            userCreated(users.next());
+        }
+    }
+    
+    public Set<Long> findByUsername(String username) {
+        return lookup(byUsername, username);
+    }
+    
+    public Set<Long> findByEmail(String email) {
+        return lookup(byEmail, normalizeEmail(email));
+    }
+    
+    @Override
+    public void userCreated(User user) {
+        add(byUsername, user.getUsername(), user.getId());
+        add(byEmail, normalizeEmail(user.getEmail()), user.getId());
+    }
+    
+    @Override
+    public void userUpdated(User previous, User current) {
+        // Lookups don't take the store's lock: only touch keys that changed,
+        // and add the new key before dropping the old one, so a reader never
+        // misses a user whose username or email is unchanged
+        move(byUsername, previous.getUsername(), current.getUsername(), current.getId());
+        move(byEmail, normalizeEmail(previous.getEmail()), normalizeEmail(current.getEmail()),
+            current.getId());
+    }
+    
+    @Override
+    public void userDeleted(User previous) {
+        remove(byUsername, previous.getUsername(), previous.getId());
+        remove(byEmail, normalizeEmail(previous.getEmail()), previous.getId());
+    }
+    
+    @Override
+    public void usersCleared() {
+        byUsername.clear();
+        byEmail.clear();
+    }
+    
+    private static Set<Long> lookup(Map<String, Set<Long>> index, String key) {
+        if (key == null) {
+            return Collections.emptySet();
+        }
+        Set<Long> ids = index.get(key);
+        return ids != null ? Collections.unmodifiableSet(ids) : Collections.<Long>emptySet();
+    }
+    
+    private static void add(Map<String, Set<Long>> index, String key, Long id) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+    
+    private static void move(Map<String, Set<Long>> index, String oldKey, String newKey, Long id) {
+        if (!Objects.equals(oldKey, newKey)) {
+            add(index, newKey, id);
+            remove(index, oldKey, id);
+        }
+    }
+    
+    // Removes only this id, so other users with the same key keep their entry
+    private static void remove(Map<String, Set<Long>> index, String key, Long id) {
+        if (key != null) {
+            // Drop the entry once its last id is gone so the index doesn't grow forever
+            index.computeIfPresent(key, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+    
+    private static String normalizeEmail(String email) {
+        return email != null ? email.trim().toLowerCase(Locale.ROOT) : null;
+    }
+}
@@ -0,0 +1,123 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Compact binary encoding of a User for storage outside the Java heap.
+ * 
+ * Layout: format byte, id, version, createdAt (epoch second + nano, UTC)
+ * and the string fields as length-prefixed UTF-8 (length -1 means null).
+ * No reflection and no intermediate JSON tree are involved.
+ */
+final class UserRecordCodec {
+    
+    private static final byte FORMAT = 2;
+    private static final int VERSION_OFFSET = 1 + 8;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    
+    private UserRecordCodec() {
+    }
+    
+    static byte[] encode(User user) {
+        byte[] username = utf8(user.getUsername());
+        byte[] email = utf8(user.getEmail());
+        byte[] firstName = utf8(user.getFirstName());
+        byte[] lastName = utf8(user.getLastName());
+        
+        int size = 1 + 8 + 8 + 8 + 4
+            + sizeOf(username) + sizeOf(email) + sizeOf(firstName) + sizeOf(lastName);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        
+        buffer.put(FORMAT);
+        buffer.putLong(user.getId() != null ? user.getId() : 0L);
+        buffer.putLong(user.getVersion() != null ? user.getVersion() : 1L);
+        LocalDateTime createdAt = user.getCreatedAt();
+        if (createdAt != null) {
+            buffer.putLong(createdAt.toEpochSecond(ZoneOffset.UTC));
+            buffer.putInt(createdAt.getNano());
+        } else {
+            buffer.putLong(NO_TIMESTAMP);
+            buffer.putInt(0);
+        }
+        put(buffer, username);
+        put(buffer, email);
+        put(buffer, firstName);
+        put(buffer, lastName);
+        return buffer.array();
+    }
+    
+    /**
+     * Decode a user starting at the buffer's position; the position is advanced
+     * past the record.
+     */
+    static User decode(ByteBuffer buffer) {
+        byte format = buffer.get();
+        if (format != FORMAT) {
+            throw new IllegalStateException("Unknown user record format: " + format);
+        }
+        User user = new User();
+        user.setId(buffer.getLong());
+        user.setVersion(buffer.getLong());
+        long epochSecond = buffer.getLong();
+        int nano = buffer.getInt();
+        if (epochSecond != NO_TIMESTAMP) {
+            user.setCreatedAt(LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC));
+        }
+        user.setUsername(getString(buffer));
+        user.setEmail(getString(buffer));
+        user.setFirstName(getString(buffer));
+        user.setLastName(getString(buffer));
+        return user;
+    }
+    
+    static User decode(byte[] record) {
+        return decode(ByteBuffer.wrap(record));
+    }
+    
+    /**
+     * Read only the version of the record starting at the given absolute
+     * position, without decoding the rest.
+     */
+    static long version(ByteBuffer buffer, int position) {
+        return buffer.getLong(position + VERSION_OFFSET);
+    }
+    
+    /**
+     * Overwrite the version of an encoded record in place.
+     */
+    static void setVersion(byte[] record, long version) {
+        ByteBuffer.wrap(record).putLong(VERSION_OFFSET, version);
+    }
+    
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+    
+    private static int sizeOf(byte[] value) {
+        return 4 + (value != null ? value.length : 0);
+    }
+    
+    private static void put(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+    }
+    
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
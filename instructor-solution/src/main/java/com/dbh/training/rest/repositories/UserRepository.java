@@ -0,0 +1,157 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Storage abstraction for users.
+ * 
+ * Resources only talk to this interface, so the storage engine can be swapped
+ * (see JerseyConfig) without touching any endpoint code.
+ * 
+ * All implementations must be thread-safe.
+ */
+public interface UserRepository {
+    
+    /**
+     * Expected version that matches any current version (unconditional write).
+     */
+    long ANY_VERSION = -1L;
+    
+    /**
+     * Find a user by id.
+     * 
+     * @param id The user id
+     * @return The user, or null if it doesn't exist
+     */
+    User findById(long id);
+    
+    /**
+     * Iterate over users in ascending id order, starting after the given id.
+     * 
+     * The iterator is weakly consistent: it never throws
+     * ConcurrentModificationException and may or may not reflect
+     * writes made while iterating.
+     * 
+     * @param afterId Exclusive lower bound (0 for the beginning)
+     * @return Iterator over users
+     */
+    Iterator<User> iterateFrom(long afterId);
+    
+    /**
+     * Read one page of users in ascending id order.
+     * 
+     * @param afterId Exclusive lower bound (0 for the first page)
+     * @param limit Maximum number of users to return
+     * @return Up to limit users
+     */
+    default List<User> findPage(long afterId, int limit) {
+        List<User> page = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<User> iterator = iterateFrom(afterId);
+        while (page.size() < limit && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+    
+    /**
+     * Store a new user, assigning its id, creation timestamp and version 1.
+     * 
+     * @param user The user to create
+     * @return The stored user
+     */
+    User create(User user);
+    
+    /**
+     * Replace an existing user. Its version is incremented.
+     * 
+     * @param id The user id
+     * @param user The new state (its id is set to the given id)
+     * @return The stored user, or null if no user with that id exists
+     */
+    default User update(long id, User user) {
+        return update(id, user, ANY_VERSION);
+    }
+    
+    /**
+     * Replace an existing user if it still has the expected version
+     * (optimistic locking). Checking and writing happen atomically.
+     * 
+     * @param id The user id
+     * @param user The new state (its id is set to the given id)
+     * @param expectedVersion The version the caller last saw, or ANY_VERSION
+     * @return The stored user, or null if no user with that id exists
+     * @throws VersionConflictException If the user has a different version
+     */
+    User update(long id, User user, long expectedVersion);
+    
+    /**
+     * Delete a user.
+     * 
+     * @param id The user id
+     * @return true if the user existed
+     */
+    default boolean delete(long id) {
+        return delete(id, ANY_VERSION);
+    }
+    
+    /**
+     * Delete a user if it still has the expected version.
+     * 
+     * @param id The user id
+     * @param expectedVersion The version the caller last saw, or ANY_VERSION
+     * @return true if the user existed
+     * @throws VersionConflictException If the user has a different version
+     */
+    boolean delete(long id, long expectedVersion);
+    
+    /**
+     * Store a user under its existing id and version, e.g. when loading data
+     * back in. Later calls to create() never reuse this id.
+     * 
+     * @param user The user, with id set
+     */
+    void restore(User user);
+    
+    /**
+     * @return The id the next create() will assign
+     */
+    long nextId();
+    
+    /**
+     * Make create() assign ids from the given one on (or from a higher one),
+     * e.g. when loading data back in: ids of deleted users are then not
+     * reused either.
+     * 
+     * @param nextId Lowest id create() may assign from now on
+     */
+    void reserveIds(long nextId);
+    
+    /**
+     * Run several writes as one unit of work.
+     * 
+     * This is not a transaction: each write is applied on its own. It lets an
+     * implementation amortize per-write costs such as waiting for fsync over
+     * the whole batch.
+     * 
+     * @param work The writes to run
+     * @return The result of work
+     */
+    default <T> T batch(Supplier<T> work) {
+        return work.get();
+    }
+    
+    /**
+     * @return Number of stored users
+     */
+    long count();
+    
+    /**
+     * Remove all users and reset id generation (mainly for tests).
+     */
+    void clear();
+}
@@ -0,0 +1,245 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serialized response bodies of single users, keyed by (id, version, media
+ * type), so a hot user is only run through Jackson (or protobuf) once per
+ * version.
+ * 
+ * The cache is bounded by the total size of the stored bodies, not by the
+ * number of entries. It is split into lock-striped segments, each an LRU
+ * (access-ordered LinkedHashMap) with its share of the byte budget. Users
+ * are the unit of eviction: all media types of one user live in one entry.
+ * 
+ * The version in the key already prevents serving an old body for a new
+ * version. As a listener of the ObservableUserRepository the cache also
+ * drops a user's bodies as soon as it is written (they can never be hit
+ * again and would only take up space) and empties itself on clear().
+ * Ordinary writes only touch the written id; a body of an older version
+ * that a slow request stores afterwards is never served.
+ * 
+ * One race remains: a request reads a user, a write replaces it without
+ * changing the version (restore(), or clear() and the id is reused), and
+ * the request then stores the body of the old data. put() therefore takes
+ * the generation seen before the read and ignores bodies if such a write
+ * has happened since. These writes are rare, so under normal write
+ * traffic the generation stays put and bodies are stored.
+ */
+public class UserResponseCache implements UserChangeListener {
+    
+    private static final int SEGMENTS = 16;
+    // Rough per-entry overhead of the map entry, key and arrays
+    static final int ENTRY_OVERHEAD = 96;
+    
+    private final long maxBytes;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    
+    /**
+     * @param maxBytes Upper bound for the size of all cached bodies (0 disables the cache)
+     */
+    public UserResponseCache(long maxBytes) {
+        this.maxBytes = Math.max(0L, maxBytes);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(this.maxBytes / SEGMENTS);
+        }
+    }
+    
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+    
+    /**
+     * @return Changes on every restore() and clear() of the store; pass it to put()
+     */
+    public long generation() {
+        return generation.get();
+    }
+    
+    /**
+     * @return The cached body, or null
+     */
+    public byte[] get(long id, long version, String mediaType) {
+        byte[] body = segmentFor(id).get(id, version, mediaType);
+        if (body != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return body;
+    }
+    
+    /**
+     * Store a body unless a user was restored or the store cleared since
+     * the given generation was taken.
+     */
+    public void put(long id, long version, String mediaType, byte[] body, long seenGeneration) {
+        if (!isEnabled() || seenGeneration != generation.get()) {
+            return;
+        }
+        segmentFor(id).put(id, version, mediaType, body);
+    }
+    
+    public void invalidate(long id) {
+        segmentFor(id).remove(id);
+    }
+    
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+    
+    /**
+     * @return Hit/miss counters and current size, e.g. for a health endpoint
+     */
+    public Map<String, Object> stats() {
+        long entries = 0;
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                entries += segment.entries.size();
+                bytes += segment.bytes;
+            }
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 0.0);
+        stats.put("evictions", evictions.sum());
+        stats.put("entries", entries);
+        stats.put("bytes", bytes);
+        stats.put("maxBytes", maxBytes);
+        return stats;
+    }
+    
+    public long hits() {
+        return hits.sum();
+    }
+    
+    public long misses() {
+        return misses.sum();
+    }
+    
+    @Override
+    public void userCreated(User user) {
+        // A new id has nothing cached, but one left from before a clear() may be
+        invalidate(user.getId());
+    }
+    
+    @Override
+    public void userUpdated(User previous, User current) {
+        invalidate(current.getId());
+    }
+    
+    @Override
+    public void userDeleted(User previous) {
+        invalidate(previous.getId());
+    }
+    
+    @Override
+    public void userRestored(User previous, User user) {
+        // Possibly the same version as a body being stored right now
+        generation.incrementAndGet();
+        invalidate(user.getId());
+    }
+    
+    @Override
+    public void usersCleared() {
+        invalidateAll();
+    }
+    
+    private Segment segmentFor(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+    }
+    
+    /**
+     * The bodies of one version of one user, by media type.
+     */
+    private static final class Entry {
+        
+        final long version;
+        final Map<String, byte[]> bodies = new HashMap<>(4);
+        long weight = ENTRY_OVERHEAD;
+        
+        Entry(long version) {
+            this.version = version;
+        }
+    }
+    
+    private final class Segment {
+        
+        private final long maxBytes;
+        private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+        private long bytes;
+        
+        Segment(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+        
+        synchronized byte[] get(long id, long version, String mediaType) {
+            Entry entry = entries.get(id);
+            return entry != null && entry.version == version ? entry.bodies.get(mediaType) : null;
+        }
+        
+        synchronized void put(long id, long version, String mediaType, byte[] body) {
+            long weight = body.length + ENTRY_OVERHEAD;
+            if (weight > maxBytes) {
+                return;
+            }
+            Entry entry = entries.get(id);
+            if (entry != null && entry.version > version) {
+                // A newer version is already cached; this body is out of date
+                return;
+            }
+            if (entry == null || entry.version != version) {
+                remove(id);
+                entry = new Entry(version);
+                entries.put(id, entry);
+                bytes += entry.weight;
+            }
+            // The per-entry overhead was counted when the entry was created
+            byte[] previous = entry.bodies.put(mediaType, body);
+            long delta = previous != null ? body.length - previous.length : body.length;
+            entry.weight += delta;
+            bytes += delta;
+            evict();
+        }
+        
+        synchronized void remove(long id) {
+            Entry entry = entries.remove(id);
+            if (entry != null) {
+                bytes -= entry.weight;
+            }
+        }
+        
+        synchronized void clear() {
+            entries.clear();
+            bytes = 0;
+        }
+        
+        private void evict() {
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().weight;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Type-ahead search over username, first name and last name.
+ * 
+ * Every field is split into lower-case tokens and kept in a sorted inverted
+ * index (token to user ids). A query term matches a token it is a prefix of,
+ * so all candidates for a term are one contiguous range of the sorted map.
+ * Terms are combined with AND: the term with the fewest ids drives the scan,
+ * and each of its ids is checked against the other terms using the tokens
+ * kept per user, so no per-term id sets are built.
+ * 
+ * The size of a term's ids is estimated from the first tokens of its range.
+ * If the driving term has at most FULL_SCORE_LIMIT ids, every match is
+ * scored, ranked and counted. Otherwise (a short prefix such as "a" on a large
+ * store) the scan stops as soon as limit matches are found, exact token
+ * matches first, and the total is only an estimate. Either way a search costs
+ * time in proportion to the results, not to the number of matching users.
+ * 
+ * Registered as a listener on the ObservableUserRepository, so the index is
+ * updated incrementally on every write.
+ */
+public class UserSearchIndex implements UserChangeListener {
+    
+    private static final int EXACT_MATCH_SCORE = 2;
+    private static final int PREFIX_MATCH_SCORE = 1;
+    private static final int NO_MATCH = 0;
+    
+    // Up to this many candidate ids, every match is scored and counted
+    static final int FULL_SCORE_LIMIT = 10_000;
+    
+    // Tokens of a term's range that are looked at to estimate its size
+    private static final int ESTIMATE_TOKENS = 64;
+    
+    private static final long NOT_SEEN = 0L;
+    
+    private final NavigableMap<String, Set<Long>> tokens = new ConcurrentSkipListMap<>();
+    
+    // Tokens of every user, so candidates are checked without intersecting id sets
+    private final ConcurrentLongObjectMap<String[]> userTokens = new ConcurrentLongObjectMap<>();
+    
+    /**
+     * Index users that were already stored before this index was registered.
+     */
+    public void rebuild(Iterator<User> users) {
+        usersCleared();
+        while (users.hasNext()) {
+            userCreated(users.next());
+        }
+    }
+    
+    /**
+     * Find the best matching user ids.
+     * 
+     * Users matching a term exactly rank above users that only match a prefix;
+     * ties are broken by id. When the total is estimated, the results are
+     * the first limit matches found, ranked the same way among themselves.
+     * 
+     * @param query One or more search terms
+     * @param limit Maximum number of ids to return
+     * @return Matching ids, best match first, and the number of all matches
+     */
+    public Matches search(String query, int limit) {
+        String[] terms = new LinkedHashSet<>(tokenize(query)).toArray(new String[0]);
+        if (terms.length == 0 || limit < 1) {
+            return new Matches(Collections.emptyList(), 0, false, 0);
+        }
+        
+        // The smallest posting list bounds the candidates for all other terms;
+        // ranges too large to size come last
+        List<Posting> postings = new ArrayList<>(terms.length);
+        for (String term : terms) {
+            postings.add(new Posting(term));
+        }
+        postings.sort(Comparator.comparing((Posting posting) -> !posting.complete)
+            .thenComparingLong(posting -> posting.estimate));
+        Posting driver = postings.get(0);
+        boolean scoreAll = driver.complete && driver.estimate <= FULL_SCORE_LIMIT;
+        
+        // A user can be listed under several tokens of the same range
+        LongLongHashMap seen = new LongLongHashMap(
+            scoreAll ? (int) driver.estimate : limit * 4, NOT_SEEN);
+        TopMatches top = new TopMatches(limit);
+        int found = 0;
+        int scanned = 0;
+        boolean cut = false;
+        Iterator<Set<Long>> sets = driver.sets();
+        while (!cut && sets.hasNext()) {
+            for (Long id : sets.next()) {
+                if (seen.put(id, 1L) != NOT_SEEN) {
+                    continue;
+                }
+                scanned++;
+                int score = score(id, terms);
+                if (score == NO_MATCH) {
+                    continue;
+                }
+                found++;
+                top.offer(id, score);
+                if (!scoreAll && found == limit) {
+                    cut = true;
+                    break;
+                }
+            }
+        }
+        
+        if (!cut) {
+            return new Matches(top.ids(), found, false, scanned);
+        }
+        long estimate = Math.max(found, Math.min(driver.estimate, Integer.MAX_VALUE));
+        return new Matches(top.ids(), (int) estimate, true, scanned);
+    }
+    
+    @Override
+    public void userCreated(User user) {
+        Long id = user.getId();
+        Set<String> own = tokensOf(user);
+        String[] shared = new String[own.size()];
+        int i = 0;
+        for (String token : own) {
+            shared[i++] = addToken(token, id);
+        }
+        if (shared.length > 0) {
+            userTokens.put(id, shared);
+        }
+    }
+    
+    @Override
+    public void userUpdated(User previous, User current) {
+        // Searches don't take the store's lock: only touch tokens that changed,
+        // and add new tokens before dropping old ones, so a user never drops
+        // out of a search on a token it kept
+        Long id = current.getId();
+        Set<String> before = tokensOf(previous);
+        Set<String> after = tokensOf(current);
+        String[] shared = new String[after.size()];
+        int i = 0;
+        for (String token : after) {
+            shared[i++] = before.contains(token) ? share(token) : addToken(token, id);
+        }
+        if (shared.length > 0) {
+            userTokens.put(id, shared);
+        } else {
+            userTokens.remove(id);
+        }
+        for (String token : before) {
+            if (!after.contains(token)) {
+                removeToken(token, id);
+            }
+        }
+    }
+    
+    @Override
+    public void userDeleted(User previous) {
+        Long id = previous.getId();
+        for (String token : tokensOf(previous)) {
+            removeToken(token, id);
+        }
+        userTokens.remove(id);
+    }
+    
+    @Override
+    public void usersCleared() {
+        tokens.clear();
+        userTokens.clear();
+    }
+    
+    /**
+     * @return Token to store for the user: the map's own key, not a copy per user
+     */
+    private String addToken(String token, Long id) {
+        tokens.computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet()).add(id);
+        return share(token);
+    }
+    
+    private String share(String token) {
+        String key = tokens.ceilingKey(token);
+        return token.equals(key) ? key : token;
+    }
+    
+    private void removeToken(String token, Long id) {
+        tokens.computeIfPresent(token, (t, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+    
+    /**
+     * Score a user against all terms.
+     * 
+     * @return Sum of the best score per term, or NO_MATCH if any term doesn't match
+     */
+    private int score(long id, String[] terms) {
+        String[] own = userTokens.get(id);
+        if (own == null) {
+            // Deleted after its id was read
+            return NO_MATCH;
+        }
+        int total = 0;
+        for (String term : terms) {
+            int best = NO_MATCH;
+            for (String token : own) {
+                if (token.equals(term)) {
+                    best = EXACT_MATCH_SCORE;
+                    break;
+                }
+                if (token.startsWith(term)) {
+                    best = PREFIX_MATCH_SCORE;
+                }
+            }
+            if (best == NO_MATCH) {
+                return NO_MATCH;
+            }
+            total += best;
+        }
+        return total;
+    }
+    
+    private static Set<String> tokensOf(User user) {
+        Set<String> result = new LinkedHashSet<>();
+        result.addAll(tokenize(user.getUsername()));
+        result.addAll(tokenize(user.getFirstName()));
+        result.addAll(tokenize(user.getLastName()));
+        return result;
+    }
+    
+    // Lower-case runs of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> result = new ArrayList<>();
+        if (text == null) {
+            return result;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                result.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * The ids of one query term: those of the equal token and of all tokens
+     * it is a proper prefix of.
+     */
+    private final class Posting {
+        
+        final Set<Long> exact;
+        final Collection<Set<Long>> prefixed;
+        // Upper bound of the ids (a user may be counted under several tokens);
+        // only a lower bound if the range has more tokens than were looked at
+        final long estimate;
+        final boolean complete;
+        
+        Posting(String term) {
+            exact = tokens.get(term);
+            // All tokens starting with term form one range of the sorted map
+            prefixed = tokens.subMap(term, false, term + Character.MAX_VALUE, false).values();
+            long ids = exact != null ? exact.size() : 0;
+            Iterator<Set<Long>> range = prefixed.iterator();
+            for (int i = 0; i < ESTIMATE_TOKENS && range.hasNext(); i++) {
+                ids += range.next().size();
+            }
+            estimate = ids;
+            complete = !range.hasNext();
+        }
+        
+        /**
+         * @return The id sets, exact matches first, then the range in token order
+         */
+        Iterator<Set<Long>> sets() {
+            Iterator<Set<Long>> range = prefixed.iterator();
+            if (exact == null) {
+                return range;
+            }
+            return new Iterator<Set<Long>>() {
+                private boolean exactReturned;
+                
+                @Override
+                public boolean hasNext() {
+                    return !exactReturned || range.hasNext();
+                }
+                
+                @Override
+                public Set<Long> next() {
+                    if (!exactReturned) {
+                        exactReturned = true;
+                        return exact;
+                    }
+                    return range.next();
+                }
+            };
+        }
+    }
+    
+    /**
+     * The best matches seen so far, best first, in primitive arrays.
+     */
+    private static final class TopMatches {
+        
+        private final long[] ids;
+        private final int[] scores;
+        private int size;
+        
+        TopMatches(int limit) {
+            ids = new long[limit];
+            scores = new int[limit];
+        }
+        
+        void offer(long id, int score) {
+            int index = size;
+            while (index > 0 && ranksBefore(id, score, ids[index - 1], scores[index - 1])) {
+                index--;
+            }
+            if (index == ids.length) {
+                return;
+            }
+            // The worst match falls off the end once the list is full
+            int moved = Math.min(size, ids.length - 1) - index;
+            System.arraycopy(ids, index, ids, index + 1, moved);
+            System.arraycopy(scores, index, scores, index + 1, moved);
+            ids[index] = id;
+            scores[index] = score;
+            if (size < ids.length) {
+                size++;
+            }
+        }
+        
+        List<Long> ids() {
+            List<Long> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(ids[i]);
+            }
+            return result;
+        }
+        
+        private static boolean ranksBefore(long id, int score, long otherId, int otherScore) {
+            return score != otherScore ? score > otherScore : id < otherId;
+        }
+    }
+    
+    /**
+     * The top matches of a search and how many users matched in total.
+     */
+    public static final class Matches {
+        
+        private final List<Long> ids;
+        private final int total;
+        private final boolean totalEstimated;
+        private final int scanned;
+        
+        Matches(List<Long> ids, int total, boolean totalEstimated, int scanned) {
+            this.ids = ids;
+            this.total = total;
+            this.totalEstimated = totalEstimated;
+            this.scanned = scanned;
+        }
+        
+        /**
+         * @return The best matching ids, best first, at most the requested limit
+         */
+        public List<Long> getIds() {
+            return ids;
+        }
+        
+        /**
+         * @return Number of all matching users; more than getIds().size() if the results were cut
+         */
+        public int getTotal() {
+            return total;
+        }
+        
+        /**
+         * @return true if the search stopped at the limit and getTotal() is an estimate
+         */
+        public boolean isTotalEstimated() {
+            return totalEstimated;
+        }
+        
+        /**
+         * @return Number of candidate ids that were checked
+         */
+        int getScanned() {
+            return scanned;
+        }
+    }
+}
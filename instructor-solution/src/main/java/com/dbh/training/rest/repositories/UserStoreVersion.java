@@ -0,0 +1,156 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.dto.UserChange;
+import com.dbh.training.rest.models.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version of the user store as a whole, incremented on every write, and a
+ * changelog of the most recent writes.
+ * 
+ * The version lets collection endpoints answer a conditional GET with 304
+ * Not Modified by comparing one number, without reading a single user or
+ * running Jackson.
+ * 
+ * The changelog lets clients that mirror the store catch up with only the
+ * writes since the version they last saw, instead of pulling the whole
+ * list again. It is a fixed-size ring buffer of (version, id, op) held in
+ * parallel primitive arrays; once it is full, each write overwrites the
+ * oldest entry. Every write takes exactly one version, so the entry for a
+ * version is found by arithmetic, not by searching. clear() drops the
+ * changelog: deltas across a clear would have to list every user.
+ * 
+ * Register it as the last listener of the ObservableUserRepository: it is
+ * then bumped after the write and after the indexes were updated. A reader
+ * that takes the version first and reads the data afterwards may label new
+ * data with an old version (the next request simply gets a full response),
+ * but never old data with a new version. A change is logged before the
+ * version is published, so every version a reader has seen can be looked
+ * up in the changelog.
+ * 
+ * The version starts at the current time in microseconds rather than 0,
+ * so it keeps growing across restarts and a version from before a restart
+ * is never mistaken for a newer one.
+ */
+public class UserStoreVersion implements UserChangeListener {
+    
+    private static final byte CREATE = 1;
+    private static final byte UPDATE = 2;
+    private static final byte DELETE = 3;
+    
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis() * 1000);
+    
+    private final int capacity;
+    private final long[] ids;
+    private final long[] userVersions;
+    private final byte[] ops;
+    private int size;
+    // Slot of the next change
+    private int next;
+    // The log holds every change after this version
+    private long oldestComplete;
+    
+    /**
+     * @param changelogCapacity Number of changes to keep (0 keeps none)
+     */
+    public UserStoreVersion(int changelogCapacity) {
+        this.capacity = Math.max(0, changelogCapacity);
+        this.ids = new long[capacity];
+        this.userVersions = new long[capacity];
+        this.ops = new byte[capacity];
+        this.oldestComplete = version.get();
+    }
+    
+    /**
+     * @return The current version (only ever grows)
+     */
+    public long get() {
+        return version.get();
+    }
+    
+    /**
+     * @return Opaque value for an entity tag of the current version
+     */
+    public String tag() {
+        return Long.toString(version.get());
+    }
+    
+    /**
+     * Changes after the given version, oldest first.
+     * 
+     * @param since The version the caller has seen
+     * @param limit Maximum number of changes to return
+     * @return The changes, or null if the changelog no longer reaches back
+     *         to that version (or it is not a version of this store)
+     */
+    public synchronized List<UserChange> changesSince(long since, int limit) {
+        long current = version.get();
+        if (since < oldestComplete || since > current) {
+            return null;
+        }
+        int count = (int) Math.min(current - since, limit);
+        List<UserChange> changes = new ArrayList<>(count);
+        // The newest entry (slot next - 1) has the current version
+        int slot = Math.floorMod(next - (int) (current - since), capacity == 0 ? 1 : capacity);
+        for (int i = 0; i < count; i++) {
+            changes.add(new UserChange(since + 1 + i, ids[slot], opName(ops[slot]),
+                ops[slot] != DELETE ? userVersions[slot] : null));
+            slot = slot + 1 == capacity ? 0 : slot + 1;
+        }
+        return changes;
+    }
+    
+    @Override
+    public void userCreated(User user) {
+        record(CREATE, user.getId(), user.getVersion());
+    }
+    
+    @Override
+    public void userUpdated(User previous, User current) {
+        record(UPDATE, current.getId(), current.getVersion());
+    }
+    
+    @Override
+    public void userDeleted(User previous) {
+        record(DELETE, previous.getId(), previous.getVersion());
+    }
+    
+    @Override
+    public synchronized void usersCleared() {
+        size = 0;
+        oldestComplete = version.incrementAndGet();
+    }
+    
+    private synchronized void record(byte op, Long id, Long userVersion) {
+        long changeVersion = version.get() + 1;
+        if (capacity == 0) {
+            oldestComplete = changeVersion;
+        } else {
+            if (size == capacity) {
+                // Overwrite the oldest change
+                oldestComplete++;
+            } else {
+                size++;
+            }
+            ids[next] = id;
+            userVersions[next] = userVersion != null ? userVersion : 0L;
+            ops[next] = op;
+            next = next + 1 == capacity ? 0 : next + 1;
+        }
+        version.set(changeVersion);
+    }
+    
+    private static String opName(byte op) {
+        switch (op) {
+            case CREATE:
+                return UserChange.CREATE;
+            case UPDATE:
+                return UserChange.UPDATE;
+            default:
+                return UserChange.DELETE;
+        }
+    }
+}
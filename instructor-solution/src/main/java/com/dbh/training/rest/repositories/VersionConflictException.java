@@ -0,0 +1,33 @@
+package com.dbh.training.rest.repositories;
+
+/**
+ * Thrown by conditional writes when the user was changed by someone else
+ * since the caller read it (its version no longer matches).
+ */
+public class VersionConflictException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final long id;
+    private final long currentVersion;
+    
+    public VersionConflictException(long id, long expectedVersion, long currentVersion) {
+        super("User " + id + " has version " + currentVersion + ", expected " + expectedVersion);
+        this.id = id;
+        this.currentVersion = currentVersion;
+    }
+    
+    public long getId() {
+        return id;
+    }
+    
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+    
+    static void check(long id, long currentVersion, long expectedVersion) {
+        if (expectedVersion != UserRepository.ANY_VERSION && expectedVersion != currentVersion) {
+            throw new VersionConflictException(id, expectedVersion, currentVersion);
+        }
+    }
+}
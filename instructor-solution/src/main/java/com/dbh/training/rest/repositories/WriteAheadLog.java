@@ -0,0 +1,303 @@
+package com.dbh.training.rest.repositories;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped log of user store mutations.
+ * 
+ * The log is a series of pre-sized segment files named wal-&lt;first sequence&gt;.log.
+ * Each entry is framed as [payload length][CRC32][payload] where the payload is
+ * [op][sequence][id][user record]. A zero length marks the end of a segment,
+ * and a bad checksum marks a torn write after a crash; replay stops at either.
+ * 
+ * Appending only copies bytes into the mapped segment. Durability comes from a
+ * background flusher thread (group commit): it forces the segment to disk and
+ * wakes every writer whose entry was covered, so many concurrent writes share
+ * one fsync.
+ */
+final class WriteAheadLog implements Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+    
+    static final byte OP_PUT = 1;
+    static final byte OP_DELETE = 2;
+    static final byte OP_CLEAR = 3;
+    
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final int FRAME_HEADER = 4 + 4;
+    private static final int PAYLOAD_HEADER = 1 + 8 + 8;
+    
+    /**
+     * Callback for replaying log entries in sequence order.
+     */
+    interface Replayer {
+        void apply(byte op, long sequence, long id, ByteBuffer record);
+    }
+    
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean groupCommit;
+    private final Thread flusher;
+    
+    // Guarded by this
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long lastSequence;
+    private long durableSequence;
+    private long forceCount;
+    private boolean closed;
+    
+    /**
+     * @param directory Directory holding the segment files
+     * @param segmentSize Size of each segment file in bytes
+     * @param groupCommit true to block writers until their entry is on disk,
+     *                    false to return right after the in-memory copy
+     * @param lastSequence Highest sequence already recovered; new entries continue after it
+     */
+    WriteAheadLog(Path directory, int segmentSize, boolean groupCommit, long lastSequence) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.groupCommit = groupCommit;
+        this.lastSequence = lastSequence;
+        this.durableSequence = lastSequence;
+        Files.createDirectories(directory);
+        
+        // Recovery never appends to an old segment, so a torn tail is left behind untouched
+        openSegment(lastSequence + 1);
+        
+        flusher = new Thread(this::flushLoop, "user-wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    
+    /**
+     * Replay all intact entries with a sequence above afterSequence.
+     * 
+     * @return The highest sequence found in the log (or afterSequence)
+     */
+    static long replay(Path directory, long afterSequence, Replayer replayer) throws IOException {
+        long last = afterSequence;
+        for (Path file : segments(directory)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                CRC32 crc = new CRC32();
+                while (buffer.remaining() >= FRAME_HEADER) {
+                    int length = buffer.getInt();
+                    int checksum = buffer.getInt();
+                    if (length < PAYLOAD_HEADER || length > buffer.remaining()) {
+                        break;
+                    }
+                    ByteBuffer payload = buffer.slice();
+                    payload.limit(length);
+                    crc.reset();
+                    crc.update(payload.duplicate());
+                    if ((int) crc.getValue() != checksum) {
+                        logger.warn("Torn entry in {} at offset {}, ignoring rest of segment",
+                            file.getFileName(), buffer.position() - FRAME_HEADER);
+                        break;
+                    }
+                    buffer.position(buffer.position() + length);
+                    
+                    byte op = payload.get();
+                    long sequence = payload.getLong();
+                    long id = payload.getLong();
+                    if (sequence > last) {
+                        replayer.apply(op, sequence, id, payload);
+                        last = sequence;
+                    }
+                }
+            }
+        }
+        return last;
+    }
+    
+    /**
+     * Append an entry. Callers that need ordering must serialize calls themselves.
+     * 
+     * @return The sequence number assigned to the entry
+     */
+    synchronized long append(byte op, long id, byte[] record) throws IOException {
+        if (closed) {
+            throw new IOException("Write-ahead log is closed");
+        }
+        int payloadLength = PAYLOAD_HEADER + (record != null ? record.length : 0);
+        int frameLength = FRAME_HEADER + payloadLength;
+        if (frameLength > segmentSize) {
+            throw new IOException("Log entry of " + frameLength + " bytes exceeds segment size");
+        }
+        if (segment.remaining() < frameLength) {
+            rollSegment();
+        }
+        
+        long sequence = ++lastSequence;
+        ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+        payload.put(op).putLong(sequence).putLong(id);
+        if (record != null) {
+            payload.put(record);
+        }
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        
+        segment.putInt(payloadLength);
+        segment.putInt((int) crc.getValue());
+        segment.put(payload);
+        
+        notifyAll();
+        return sequence;
+    }
+    
+    /**
+     * Block until the entry with the given sequence has been forced to disk.
+     * Returns immediately when group commit is disabled.
+     */
+    synchronized void awaitDurable(long sequence) throws IOException {
+        if (!groupCommit) {
+            return;
+        }
+        try {
+            while (durableSequence < sequence && !closed) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for log flush");
+        }
+    }
+    
+    synchronized long lastSequence() {
+        return lastSequence;
+    }
+    
+    /**
+     * @return Number of group commits so far, i.e. fsyncs shared by the writers they covered
+     */
+    synchronized long forceCount() {
+        return forceCount;
+    }
+    
+    /**
+     * Delete segments whose entries are all covered by a snapshot.
+     * 
+     * @param snapshotSequence Sequence the snapshot includes
+     */
+    void truncateUpTo(long snapshotSequence) throws IOException {
+        List<Path> files = segments(directory);
+        // The last file is the active segment and is never deleted
+        for (int i = 0; i < files.size() - 1; i++) {
+            // A segment ends right before the next one starts
+            long nextFirstSequence = firstSequence(files.get(i + 1));
+            if (nextFirstSequence <= snapshotSequence + 1) {
+                Files.deleteIfExists(files.get(i));
+            }
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            segment.force();
+            durableSequence = lastSequence;
+            closed = true;
+            notifyAll();
+        }
+        flusher.interrupt();
+        try {
+            flusher.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            channel.close();
+        }
+    }
+    
+    private void flushLoop() {
+        while (true) {
+            long target;
+            MappedByteBuffer toForce;
+            synchronized (this) {
+                try {
+                    while (!closed && durableSequence == lastSequence) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed) {
+                    return;
+                }
+                target = lastSequence;
+                toForce = segment;
+            }
+            
+            // Appends continue while we force; they join the next batch
+            toForce.force();
+            
+            synchronized (this) {
+                if (target > durableSequence) {
+                    durableSequence = target;
+                }
+                forceCount++;
+                notifyAll();
+            }
+        }
+    }
+    
+    // Called with the monitor held
+    private void rollSegment() throws IOException {
+        segment.force();
+        durableSequence = lastSequence;
+        channel.close();
+        openSegment(lastSequence + 1);
+        notifyAll();
+    }
+    
+    // Called with the monitor held (or from the constructor)
+    private void openSegment(long firstSequence) throws IOException {
+        Path file = directory.resolve(PREFIX + String.format("%020d", firstSequence) + SUFFIX);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+    
+    private static List<Path> segments(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        // Zero-padded names sort in sequence order
+        Collections.sort(files);
+        return files;
+    }
+    
+    private static long firstSequence(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -1,13 +1,32 @@
 package com.dbh.training.rest.resources;
 
+import com.dbh.training.rest.filters.PrettyPrintFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.inject.Inject;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.ResourceInfo;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.core.Variant;
+import java.lang.reflect.Method;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * Base class for all REST resources.
@@ -16,14 +35,46 @@ import java.net.URI;
  * - Logging
  * - URI building helpers
  * - Common response patterns
+ * - Running request work on the bounded ResourceExecutor
  */
 public abstract class AbstractResource {
     
     protected final Logger logger = LoggerFactory.getLogger(getClass());
     
+    // Media types a resource method produces, in @Produces order
+    private static final Map<Method, List<Variant>> VARIANTS = new ConcurrentHashMap<>();
+    
     @Context
     protected UriInfo uriInfo;
     
+    @Context
+    protected Request request;
+    
+    @Context
+    protected ResourceInfo resourceInfo;
+    
+    @Context
+    protected HttpHeaders headers;
+    
+    // Negotiated once per request, see representation()
+    private Variant representation;
+    private boolean negotiated;
+    
+    // Bounded pool for request work, bound in JerseyConfig
+    @Inject
+    protected ResourceExecutor executor;
+    
+    /**
+     * Build the response on the resource executor, releasing the request
+     * thread in the meantime.
+     * 
+     * @param response The suspended response of the resource method
+     * @param work Builds the response
+     */
+    protected void async(AsyncResponse response, Supplier<Response> work) {
+        executor.execute(response, work);
+    }
+    
     /**
      * Build a location URI for a newly created resource.
      * 
@@ -62,6 +113,121 @@ public abstract class AbstractResource {
             .build();
     }
     
+    /**
+     * Create a 201 Created response with Location and ETag headers.
+     * 
+     * @param entity The created entity to return
+     * @param id The ID of the created entity
+     * @param tag The entity tag of the created entity
+     * @return Response with 201 status, Location and ETag headers
+     */
+    protected Response created(Object entity, Object id, EntityTag tag) {
+        return Response.created(buildLocationUri(id))
+            .entity(entity)
+            .tag(tag)
+            .type(representationType())
+            .build();
+    }
+    
+    /**
+     * Create a 200 OK response with entity and ETag header.
+     * 
+     * @param entity The entity to return
+     * @param tag The entity tag of this state of the entity
+     * @return Response with 200 status and ETag header
+     */
+    protected Response ok(Object entity, EntityTag tag) {
+        return Response.ok(entity).tag(tag).type(representationType()).build();
+    }
+    
+    /**
+     * Strong entity tag for a versioned entity.
+     * 
+     * @param version The entity's version
+     * @return ETag such as "3", see {@link #representationTag(String)}
+     */
+    protected EntityTag entityTag(long version) {
+        return representationTag(Long.toString(version));
+    }
+    
+    /**
+     * Strong entity tag for the representation this request gets.
+     * 
+     * A strong tag promises byte-identical bodies, so each media type (and
+     * pretty-printed JSON) gets its own tag: compact JSON is tagged with the
+     * value itself, the others get a suffix, the same scheme as the "--gzip"
+     * suffix of the CompressionInterceptor. A client that holds the JSON body
+     * thus never gets a 304 for a protobuf request. Responses carrying such a
+     * tag must be built with {@link #representationType()}.
+     * 
+     * @param value Identifies the state, e.g. an entity's version
+     * @return ETag such as "3", "3--x-protobuf" or "3--pretty"
+     */
+    protected EntityTag representationTag(String value) {
+        Variant variant = representation();
+        if (variant == null) {
+            // Nothing acceptable: answered with 406 anyway
+            return new EntityTag(value);
+        }
+        MediaType type = variant.getMediaType();
+        if (MediaType.APPLICATION_JSON_TYPE.isCompatible(type)) {
+            boolean pretty = PrettyPrintFilter.isPrettyRequested(
+                uriInfo.getQueryParameters(), headers.getAcceptableMediaTypes());
+            return pretty
+                ? new EntityTag(value + "--pretty")
+                : new EntityTag(value);
+        }
+        return new EntityTag(value + "--" + type.getSubtype());
+    }
+    
+    /**
+     * The media type the representation tags were built for. Set on the
+     * response so that the body is written in exactly that type.
+     * 
+     * @return The negotiated media type, or null if none is acceptable
+     */
+    protected MediaType representationType() {
+        Variant variant = representation();
+        return variant != null ? variant.getMediaType() : null;
+    }
+    
+    // Jersey negotiates only once the method has returned, too late for the tag
+    private Variant representation() {
+        if (!negotiated) {
+            representation = request.selectVariant(variants(resourceInfo.getResourceMethod()));
+            negotiated = true;
+        }
+        return representation;
+    }
+    
+    private List<Variant> variants(Method method) {
+        return VARIANTS.computeIfAbsent(method, m -> {
+            Produces produces = m.getAnnotation(Produces.class);
+            if (produces == null) {
+                produces = m.getDeclaringClass().getAnnotation(Produces.class);
+            }
+            List<Variant> variants = new ArrayList<>();
+            for (String types : produces != null ? produces.value() : new String[] {MediaType.APPLICATION_JSON}) {
+                for (String type : types.split(",")) {
+                    variants.add(new Variant(MediaType.valueOf(type.trim()), (String) null, null));
+                }
+            }
+            return Collections.unmodifiableList(variants);
+        });
+    }
+    
+    /**
+     * Evaluate If-Match / If-None-Match against the current entity tag.
+     * 
+     * @param current The entity tag of the current state
+     * @return 304 Not Modified (GET/HEAD) or 412 Precondition Failed to send
+     *         instead of running the request, or null to go ahead
+     */
+    protected Response checkPreconditions(EntityTag current) {
+        Response.ResponseBuilder failed = request.evaluatePreconditions(current);
+        return failed != null ? failed.tag(current).build() : null;
+    }
+    
     /**
      * Create a 200 OK response with entity.
      * 
@@ -101,6 +267,59 @@ public abstract class AbstractResource {
             .build();
     }
     
+    /**
+     * Create a cursor-paginated response with headers.
+     * 
+     * Unlike page numbers, a cursor points just past the last returned item,
+     * so fetching the next page never has to skip over earlier entries.
+     * 
+     * @param items The page of items
+     * @param size Page size (limit)
+     * @param total Total number of items
+     * @param nextCursor Opaque cursor for the next page, or null on the last page
+     * @param tag Entity tag of the collection, or null
+     * @return Response with pagination headers and a "next" Link
+     */
+    protected Response paginated(Object items, int size, long total, String nextCursor, EntityTag tag) {
+        Response.ResponseBuilder builder = Response.ok(items)
+            .tag(tag)
+            .type(tag != null ? representationType() : null)
+            .header("X-Page-Size", size)
+            .header("X-Total-Count", total);
+        
+        if (nextCursor != null) {
+            URI next = uriInfo.getRequestUriBuilder()
+                .replaceQueryParam("cursor", nextCursor)
+                .build();
+            builder.header("X-Next-Cursor", nextCursor)
+                .link(next, "next");
+        }
+        return builder.build();
+    }
+    
+    /**
+     * Encode a numeric key as an opaque, URL-safe pagination cursor.
+     * 
+     * @param key The last key of the current page
+     * @return Cursor string
+     */
+    protected String encodeCursor(long key) {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(Long.toString(key).getBytes(StandardCharsets.US_ASCII));
+    }
+    
+    /**
+     * Decode a cursor produced by {@link #encodeCursor(long)}.
+     * 
+     * @param cursor The cursor string
+     * @return The key the cursor points after
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    protected long decodeCursor(String cursor) {
+        byte[] decoded = Base64.getUrlDecoder().decode(cursor);
+        return Long.parseLong(new String(decoded, StandardCharsets.US_ASCII));
+    }
+    
     /**
      * Log method entry for debugging.
      * 
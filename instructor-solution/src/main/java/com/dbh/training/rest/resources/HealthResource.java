@@ -1,8 +1,16 @@
 package com.dbh.training.rest.resources;
 
+import com.dbh.training.rest.config.JettyConfig;
+import com.dbh.training.rest.filters.AdaptiveConcurrencyLimit;
+import com.dbh.training.rest.repositories.UserResponseCache;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import javax.inject.Inject;
+import javax.servlet.ServletContext;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -15,11 +23,26 @@ import java.util.Map;
  * 
  * This is a simple endpoint that returns the current status of the API.
  * Useful for load balancers, monitoring tools, and initial testing.
+ * 
+ * Health checks bypass the admission control limit, so they still answer
+ * while the server sheds other requests.
  */
 @Path("/health")
 @Produces(MediaType.APPLICATION_JSON)
 public class HealthResource {
     
+    @Inject
+    private UserResponseCache responseCache;
+    
+    @Inject
+    private ResourceExecutor resourceExecutor;
+    
+    @Inject
+    private AdaptiveConcurrencyLimit concurrencyLimit;
+    
+    @Context
+    private ServletContext servletContext;
+    
     /**
      * Basic health check endpoint.
      * 
@@ -66,6 +89,16 @@ public class HealthResource {
         
         health.put("jvm", jvm);
         health.put("memory", memory);
+        health.put("responseCache", responseCache.stats());
+        health.put("executor", resourceExecutor.stats());
+        health.put("admission", concurrencyLimit.stats());
+        
+        // Jetty's request threads, for capacity planning
+        Object threadPool = servletContext != null
+            ? servletContext.getAttribute(JettyConfig.THREAD_POOL_ATTRIBUTE) : null;
+        if (threadPool instanceof QueuedThreadPool) {
+            health.put("threadPool", JettyConfig.threadPoolStats((QueuedThreadPool) threadPool));
+        }
         
         return Response.ok(health).build();
     }
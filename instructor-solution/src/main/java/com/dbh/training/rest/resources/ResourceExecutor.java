@@ -0,0 +1,228 @@
+package com.dbh.training.rest.resources;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs the work of resource methods off Jetty's request threads.
+ * 
+ * A resource method suspends its AsyncResponse and hands the work (which
+ * talks to the storage engine) to this executor, so the request thread
+ * goes straight back to the connector pool. A slow storage engine, e.g.
+ * durable storage waiting for fsync, then ties up workers from this pool
+ * instead of the threads that accept and parse requests.
+ * 
+ * The pool and its queue are bounded. When both are full the request is
+ * answered right away with 503 Service Unavailable and Retry-After instead
+ * of piling up. A request that is not answered within the timeout gets the
+ * same response if it was still queued; its work is then skipped, so
+ * retrying is safe. If its work had already started, it may still change
+ * the store: the answer is 504 Gateway Timeout without Retry-After, and
+ * the client has to check the outcome before repeating a write.
+ * 
+ * With async.enabled=false (the default) the work runs on the request
+ * thread as before.
+ * 
+ * With async.virtual.threads=true every request gets its own virtual thread
+ * instead (Java 21+). A virtual thread blocked in the storage engine does
+ * not hold an OS thread, so concurrency is limited by async.virtual.max.concurrent
+ * rather than by the pool size. The application still targets Java 8, so
+ * the one Java 21 method needed is looked up by reflection.
+ */
+public class ResourceExecutor implements Closeable {
+    
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int TIMED_OUT = 2;
+    
+    private final ExecutorService pool;
+    // Limits requests in flight on virtual threads (null for the fixed pool)
+    private final Semaphore inFlight;
+    private final long timeoutMillis;
+    private final int retryAfterSeconds;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    
+    /**
+     * @param threads Worker threads (0 runs everything on the calling thread)
+     * @param queueCapacity Tasks waiting for a worker before requests are rejected
+     * @param timeoutMillis Time until a request is answered with 503 (or 504 once its work started)
+     * @param retryAfterSeconds Retry-After sent with 503 responses
+     */
+    public ResourceExecutor(int threads, int queueCapacity, long timeoutMillis, int retryAfterSeconds) {
+        this.timeoutMillis = timeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.inFlight = null;
+        if (threads <= 0) {
+            this.pool = null;
+            return;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            runnable -> {
+                Thread thread = new Thread(runnable, "resource-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        this.pool = executor;
+    }
+    
+    private ResourceExecutor(ExecutorService virtualThreads, int maxConcurrent,
+                             long timeoutMillis, int retryAfterSeconds) {
+        this.pool = virtualThreads;
+        this.inFlight = new Semaphore(maxConcurrent);
+        this.timeoutMillis = timeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    /**
+     * Executor that runs each request on a new virtual thread.
+     * 
+     * @param maxConcurrent Requests in flight before requests are rejected
+     * @param timeoutMillis Time until a request is answered with 503 (or 504 once its work started)
+     * @param retryAfterSeconds Retry-After sent with 503 responses
+     * @throws IllegalStateException If the JVM has no virtual threads (before Java 21)
+     */
+    public static ResourceExecutor virtualThreads(int maxConcurrent, long timeoutMillis, int retryAfterSeconds) {
+        ExecutorService virtualThreads;
+        try {
+            virtualThreads = (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("async.virtual.threads needs Java 21 or later, running on "
+                + System.getProperty("java.version"));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create virtual thread executor", e);
+        }
+        return new ResourceExecutor(virtualThreads, maxConcurrent, timeoutMillis, retryAfterSeconds);
+    }
+    
+    /**
+     * Produce the response for a suspended request.
+     * 
+     * @param response The suspended response to resume
+     * @param work Builds the response; exceptions go to the exception mappers
+     */
+    public void execute(AsyncResponse response, Supplier<Response> work) {
+        if (pool == null) {
+            run(response, work);
+            return;
+        }
+        // Decides between the task and the timeout which one goes first
+        AtomicInteger state = new AtomicInteger(QUEUED);
+        response.setTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        response.setTimeoutHandler(suspended -> {
+            timedOut.increment();
+            if (state.compareAndSet(QUEUED, TIMED_OUT)) {
+                suspended.resume(unavailable("Request timed out"));
+            } else {
+                suspended.resume(Response.status(Response.Status.GATEWAY_TIMEOUT)
+                    .entity("Request timed out while in progress, it may still complete")
+                    .build());
+            }
+        });
+        Runnable task = () -> {
+            // Timed out while queued: nobody waits for the result any more
+            if (state.compareAndSet(QUEUED, RUNNING)) {
+                run(response, work);
+            }
+        };
+        try {
+            if (inFlight == null) {
+                pool.execute(task);
+            } else {
+                submitVirtual(task);
+            }
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            response.resume(unavailable("Server busy, retry later"));
+        }
+    }
+    
+    /**
+     * @return Pool usage and rejection counters, e.g. for a health endpoint
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", pool != null);
+        if (pool instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor executor = (ThreadPoolExecutor) pool;
+            stats.put("threads", executor.getMaximumPoolSize());
+            stats.put("active", executor.getActiveCount());
+            stats.put("queued", executor.getQueue().size());
+        } else if (inFlight != null) {
+            stats.put("virtualThreads", true);
+            stats.put("available", inFlight.availablePermits());
+        }
+        stats.put("rejected", rejected.sum());
+        stats.put("timedOut", timedOut.sum());
+        return stats;
+    }
+    
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+    
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+    
+    private void submitVirtual(Runnable task) {
+        if (!inFlight.tryAcquire()) {
+            throw new RejectedExecutionException("Too many requests in flight");
+        }
+        try {
+            pool.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+    
+    private Response unavailable(String message) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+            .entity(message)
+            .build();
+    }
+    
+    private static void run(AsyncResponse response, Supplier<Response> work) {
+        try {
+            response.resume(work.get());
+        } catch (Throwable e) {
+            // Errors too, or the request would hang until the timeout without a trace
+            response.resume(e);
+            if (e instanceof VirtualMachineError) {
+                // Out of memory and the like: the thread has to see them as well
+                throw (VirtualMachineError) e;
+            }
+        }
+    }
+}
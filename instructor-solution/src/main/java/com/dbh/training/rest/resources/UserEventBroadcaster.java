@@ -0,0 +1,388 @@
+package com.dbh.training.rest.resources;
+
+import com.dbh.training.rest.dto.UserChange;
+import com.dbh.training.rest.models.User;
+import com.dbh.training.rest.repositories.UserChangeListener;
+import com.dbh.training.rest.repositories.UserStoreVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes every write to the user store to Server-Sent Events subscribers
+ * (GET /users/events).
+ * 
+ * Listener callbacks run while the store's write lock is held, so they only
+ * put the change into each subscriber's bounded queue and never touch the
+ * network. A small pool of sender threads drains the queues; a subscriber
+ * with queued changes occupies at most one sender at a time. A subscriber
+ * whose queue is full is too slow to keep up: it is disconnected instead of
+ * slowing down writers or holding unbounded memory. Its client reconnects
+ * with Last-Event-ID and catches up from the changelog.
+ * 
+ * A client that stops reading without closing the connection must not hold
+ * up the others. A send that completes later does not keep a sender: the
+ * next send is chained onto its completion. A send still unfinished after
+ * the send timeout disconnects its subscriber. If the sink blocked a sender
+ * thread inside send(), the pool gets one extra thread until that call
+ * returns (the container's idle timeout ends it), so the other subscribers
+ * always keep senderThreads senders.
+ * 
+ * Event ids are store versions, so Last-Event-ID resume reads the retained
+ * history from the changelog in UserStoreVersion. If that no longer reaches
+ * back far enough, or the store was cleared, the subscriber gets a "reset"
+ * event and has to read the full list again.
+ * 
+ * SseBroadcaster is not used for the fan-out: it writes to every sink on the
+ * calling thread, which would be the writer holding the store's lock.
+ */
+public class UserEventBroadcaster implements UserChangeListener, Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UserEventBroadcaster.class);
+    
+    private final UserStoreVersion storeVersion;
+    private final int queueCapacity;
+    private final int senderThreads;
+    private final long sendTimeoutNanos;
+    private final ThreadPoolExecutor senders;
+    private final ScheduledExecutorService watchdog;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // Subscribers with a send in progress, including ones already disconnected
+    private final Set<Subscriber> sending = ConcurrentHashMap.newKeySet();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    // Senders stuck in a timed-out send() call, replaced by extra threads
+    private int blockedSenders;
+    
+    /**
+     * @param storeVersion Source of event ids and of the history for resuming
+     * @param queueCapacity Changes buffered per subscriber before it is dropped
+     * @param senderThreads Threads writing events to subscribers
+     * @param sendTimeoutMillis Time a subscriber may take to accept one event before it is dropped
+     */
+    public UserEventBroadcaster(UserStoreVersion storeVersion, int queueCapacity, int senderThreads,
+                                long sendTimeoutMillis) {
+        this.storeVersion = storeVersion;
+        this.queueCapacity = queueCapacity;
+        this.senderThreads = senderThreads;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Fixed size like newFixedThreadPool, but resizable (see senderBlocked)
+        this.senders = new ThreadPoolExecutor(senderThreads, Integer.MAX_VALUE,
+            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "user-events-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-events-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkInterval = Math.max(1L, sendTimeoutMillis / 4);
+        watchdog.scheduleWithFixedDelay(this::checkSendTimeouts,
+            checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Start streaming changes to a new subscriber.
+     * 
+     * @param lastEventId The last event the client received, or null for live changes only
+     */
+    public void subscribe(SseEventSink sink, Sse sse, Long lastEventId) {
+        Subscriber subscriber = new Subscriber(sink, sse);
+        // Registered before the history is read: a change is either in the
+        // history or queued, duplicates are skipped by version
+        subscribers.add(subscriber);
+        if (lastEventId != null) {
+            List<UserChange> history = storeVersion.changesSince(lastEventId, Integer.MAX_VALUE);
+            subscriber.backlog = history != null ? history : Collections.singletonList(reset());
+        }
+        subscriber.start();
+    }
+    
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+    
+    /**
+     * @return Subscribers disconnected because their queue was full
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+    
+    /**
+     * @return Subscribers disconnected because a send took longer than the send timeout
+     */
+    public long timedOutCount() {
+        return timedOut.sum();
+    }
+    
+    @Override
+    public void userCreated(User user) {
+        publish(new UserChange(storeVersion.get(), user.getId(), UserChange.CREATE, user.getVersion()));
+    }
+    
+    @Override
+    public void userUpdated(User previous, User current) {
+        publish(new UserChange(storeVersion.get(), current.getId(), UserChange.UPDATE, current.getVersion()));
+    }
+    
+    @Override
+    public void userDeleted(User previous) {
+        publish(new UserChange(storeVersion.get(), previous.getId(), UserChange.DELETE, null));
+    }
+    
+    @Override
+    public void usersCleared() {
+        publish(reset());
+    }
+    
+    @Override
+    public void close() {
+        for (Subscriber subscriber : subscribers) {
+            subscribers.remove(subscriber);
+            subscriber.close();
+        }
+        watchdog.shutdownNow();
+        senders.shutdownNow();
+    }
+    
+    // Registered after UserStoreVersion, so get() is the version of this write
+    private UserChange reset() {
+        return new UserChange(storeVersion.get(), 0L, UserChange.RESET, null);
+    }
+    
+    private void publish(UserChange change) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(change);
+        }
+    }
+    
+    private boolean disconnect(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            // Closing may wait for a write in progress: never on a writer's thread
+            execute(subscriber::close);
+            return true;
+        }
+        return false;
+    }
+    
+    private void execute(Runnable task) {
+        try {
+            senders.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Shut down by close()
+            logger.debug("Event sender stopped", e);
+        }
+    }
+    
+    private void checkSendTimeouts() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : sending) {
+            long started = subscriber.sendStarted;
+            if (started == 0L || now - started <= sendTimeoutNanos) {
+                continue;
+            }
+            if (disconnect(subscriber)) {
+                timedOut.increment();
+                logger.info("Disconnecting event subscriber that did not accept an event within {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+            }
+            if (subscriber.holdsBlockedSender()) {
+                senderBlocked(1);
+            }
+            // Nothing more is sent to it; its send may never complete
+            sending.remove(subscriber);
+        }
+    }
+    
+    /**
+     * Keep senderThreads threads for the other subscribers while a sender is
+     * stuck in a timed-out send() call.
+     */
+    private synchronized void senderBlocked(int delta) {
+        blockedSenders += delta;
+        senders.setCorePoolSize(senderThreads + blockedSenders);
+    }
+    
+    private final class Subscriber implements Runnable {
+        
+        private final SseEventSink sink;
+        private final Sse sse;
+        private final BlockingQueue<UserChange> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean started;
+        // System.nanoTime() when the send in progress started, 0 if none; read by the watchdog
+        private volatile long sendStarted;
+        // Guarded by this: a sender thread is inside sink.send(), and whether it was replaced
+        private boolean inSend;
+        private boolean replaced;
+        // Only used by the sender task (handed over by the executor or the completed send)
+        private List<UserChange> backlog = Collections.emptyList();
+        private Iterator<UserChange> pending;
+        private long lastSent;
+        
+        Subscriber(SseEventSink sink, Sse sse) {
+            this.sink = sink;
+            this.sse = sse;
+        }
+        
+        void start() {
+            started = true;
+            schedule();
+        }
+        
+        void offer(UserChange change) {
+            if (!queue.offer(change)) {
+                dropped.increment();
+                logger.info("Disconnecting slow event subscriber ({} changes queued)", queueCapacity);
+                disconnect(this);
+            } else if (started) {
+                schedule();
+            }
+        }
+        
+        void close() {
+            try {
+                sink.close();
+            } catch (RuntimeException e) {
+                logger.debug("Error closing event stream", e);
+            }
+        }
+        
+        /**
+         * Called by the watchdog for a timed-out send.
+         * 
+         * @return true if a sender thread is stuck in it and has to be replaced
+         */
+        synchronized boolean holdsBlockedSender() {
+            if (inSend && !replaced) {
+                replaced = true;
+                return true;
+            }
+            return false;
+        }
+        
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                execute(this);
+            }
+        }
+        
+        @Override
+        public void run() {
+            if (pending == null) {
+                pending = backlog.iterator();
+                backlog = Collections.emptyList();
+            }
+            try {
+                UserChange change;
+                while ((change = next()) != null) {
+                    if (change.getVersion() <= lastSent) {
+                        continue;
+                    }
+                    CompletableFuture<?> written = send(change);
+                    if (!written.isDone()) {
+                        // Continue once the client took the event; the sender is free meanwhile
+                        long version = change.getVersion();
+                        written.whenComplete((result, error) -> {
+                            if (error != null) {
+                                failed(error);
+                            } else {
+                                sent(version);
+                                execute(this);
+                            }
+                        });
+                        return;
+                    }
+                    // Throws if the write failed
+                    written.join();
+                    sent(change.getVersion());
+                }
+            } catch (RuntimeException e) {
+                failed(e);
+                return;
+            }
+            scheduled.set(false);
+            // A change may have been queued after the last poll but before the flag was cleared
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+        
+        private UserChange next() {
+            return pending.hasNext() ? pending.next() : queue.poll();
+        }
+        
+        private CompletableFuture<?> send(UserChange change) {
+            if (sink.isClosed() || !subscribers.contains(this)) {
+                throw new IllegalStateException("Event stream closed");
+            }
+            OutboundSseEvent event = sse.newEventBuilder()
+                .name(change.getOp())
+                .id(Long.toString(change.getVersion()))
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(UserChange.class, change)
+                .build();
+            synchronized (this) {
+                inSend = true;
+            }
+            sendStarted = System.nanoTime() | 1L;
+            sending.add(this);
+            try {
+                // Completes once written; may also block right here until it is
+                return sink.send(event).toCompletableFuture();
+            } finally {
+                boolean wasReplaced;
+                synchronized (this) {
+                    inSend = false;
+                    wasReplaced = replaced;
+                    replaced = false;
+                }
+                if (wasReplaced) {
+                    senderBlocked(-1);
+                }
+            }
+        }
+        
+        private void sent(long version) {
+            sending.remove(this);
+            sendStarted = 0L;
+            lastSent = version;
+        }
+        
+        private void failed(Throwable error) {
+            sending.remove(this);
+            sendStarted = 0L;
+            // Typically the client went away or the send timed out
+            logger.debug("Event subscriber disconnected",
+                error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            disconnect(this);
+        }
+    }
+}
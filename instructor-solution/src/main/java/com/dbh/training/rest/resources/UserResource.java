@@ -1,15 +1,49 @@
 package com.dbh.training.rest.resources;
 
+import com.dbh.training.rest.config.CborProvider;
+import com.dbh.training.rest.config.ProtobufProvider;
+import com.dbh.training.rest.config.SmileProvider;
+import com.dbh.training.rest.dto.BatchOperation;
+import com.dbh.training.rest.dto.BatchResult;
+import com.dbh.training.rest.dto.ImportProgress;
+import com.dbh.training.rest.dto.UserChange;
+import com.dbh.training.rest.dto.UserChanges;
 import com.dbh.training.rest.models.User;
+import com.dbh.training.rest.repositories.UserIndex;
+import com.dbh.training.rest.repositories.UserRepository;
+import com.dbh.training.rest.repositories.UserSearchIndex;
+import com.dbh.training.rest.repositories.UserStoreVersion;
+import com.dbh.training.rest.repositories.VersionConflictException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
+import javax.inject.Inject;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import java.net.URI;
-import java.time.LocalDateTime;
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Providers;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Solution for Exercise 03: Jersey CRUD
@@ -18,42 +52,287 @@ import java.util.concurrent.atomic.AtomicLong;
  * This is what students should have after completing Exercise 03.
  */
 @Path("/users")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, SmileProvider.SMILE, CborProvider.CBOR, ProtobufProvider.PROTOBUF})
+@Consumes({MediaType.APPLICATION_JSON, SmileProvider.SMILE, CborProvider.CBOR, ProtobufProvider.PROTOBUF})
 public class UserResource extends AbstractResource {
     
-    // Thread-safe storage for users
-    private static final Map<Long, User> users = new ConcurrentHashMap<>();
-    private static final AtomicLong idGenerator = new AtomicLong(1);
+    // Page size limits for GET /users (the default is a String for @DefaultValue)
+    static final String DEFAULT_PAGE_SIZE = "100";
+    static final int MAX_PAGE_SIZE = 1000;
     
-    // Package-private method for test cleanup (only accessible from same package)
-    // This pattern prevents production code misuse while allowing test access
-    static void resetForTesting() {
-        users.clear();
-        idGenerator.set(1);
+    // Result limits for GET /users/search
+    static final int MAX_SEARCH_RESULTS = 100;
+    
+    // Maximum number of operations in one POST /users/batch
+    static final int MAX_BATCH_SIZE = 10_000;
+    
+    // Number of users written between flushes during an export
+    static final int EXPORT_FLUSH_INTERVAL = 256;
+    
+    // Newline-delimited JSON, used by POST /users/import
+    static final String NDJSON = "application/x-ndjson";
+    
+    // Users created per batch (and per progress line) during an import
+    static final int IMPORT_CHUNK_SIZE = 1000;
+    
+    // Error messages reported per progress line; further errors are only counted
+    static final int MAX_IMPORT_ERRORS = 100;
+    
+    // Change limits for GET /users/changes (the default is a String for @DefaultValue)
+    static final String DEFAULT_CHANGES = "1000";
+    static final int MAX_CHANGES = 10_000;
+    
+    // Storage engine, bound in JerseyConfig
+    @Inject
+    private UserRepository users;
+    
+    // Secondary indexes for lookups by username/email
+    @Inject
+    private UserIndex userIndex;
+    
+    // Prefix search over username, first and last name
+    @Inject
+    private UserSearchIndex searchIndex;
+    
+    // Changes on every write; ETag of all collection responses
+    @Inject
+    private UserStoreVersion storeVersion;
+    
+    // Pushes writes to GET /users/events subscribers
+    @Inject
+    private UserEventBroadcaster eventBroadcaster;
+    
+    @Context
+    private Providers providers;
+    
+    /**
+     * GET /users?limit=&cursor=
+     * Return one page of users ordered by id.
+     * 
+     * The X-Next-Cursor header (and Link rel="next") points to the following
+     * page; it is absent on the last page.
+     * 
+     * GET /users?username= and/or ?email=
+     * Return all users matching exactly (email ignores case), using the
+     * secondary indexes instead of scanning the store.
+     * 
+     * The ETag is the store version: If-None-Match is answered with 304
+     * before any user is read or serialized.
+     */
+    @GET
+    public void getAllUsers(@QueryParam("limit") @DefaultValue(DEFAULT_PAGE_SIZE) int limit,
+                            @QueryParam("cursor") String cursor,
+                            @QueryParam("username") String username,
+                            @QueryParam("email") String email,
+                            @Suspended AsyncResponse response) {
+        async(response, () -> {
+            // Taken before reading any data, see UserStoreVersion
+            EntityTag tag = collectionTag();
+            if (username != null || email != null) {
+                Response notModified = checkPreconditions(tag);
+                if (notModified != null) {
+                    return notModified;
+                }
+                return ok(findByUsernameOrEmail(username, email), tag);
+            }
+            
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                return Response.status(400)
+                    .entity("limit must be between 1 and " + MAX_PAGE_SIZE)
+                    .build();
+            }
+            
+            long afterId;
+            try {
+                afterId = cursor == null ? 0L : decodeCursor(cursor);
+            } catch (IllegalArgumentException e) {
+                return Response.status(400).entity("Invalid cursor").build();
+            }
+            Response notModified = checkPreconditions(tag);
+            if (notModified != null) {
+                return notModified;
+            }
+            
+            // Read one extra user to find out whether there is a next page
+            List<User> page = users.findPage(afterId, limit + 1);
+            String nextCursor = null;
+            if (page.size() > limit) {
+                page = page.subList(0, limit);
+                nextCursor = encodeCursor(page.get(limit - 1).getId());
+            }
+            return paginated(page, limit, users.count(), nextCursor, tag);
+        });
+    }
+    
+    /**
+     * GET /users/search?q=&limit=
+     * Type-ahead search: every term must be a prefix of the username,
+     * first name or last name. Best matches first; X-Total-Count is the
+     * number of all matches. For very common prefixes the search stops at
+     * limit and X-Total-Count is an estimate, flagged by
+     * X-Total-Count-Estimated: true.
+     */
+    @GET
+    @Path("/search")
+    public void searchUsers(@QueryParam("q") String query,
+                            @QueryParam("limit") @DefaultValue("10") int limit,
+                            @Suspended AsyncResponse response) {
+        async(response, () -> {
+            if (query == null || query.trim().isEmpty()) {
+                return Response.status(400).entity("Query parameter q is required").build();
+            }
+            if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+                return Response.status(400)
+                    .entity("limit must be between 1 and " + MAX_SEARCH_RESULTS)
+                    .build();
+            }
+            EntityTag tag = collectionTag();
+            Response notModified = checkPreconditions(tag);
+            if (notModified != null) {
+                return notModified;
+            }
+            
+            UserSearchIndex.Matches result = searchIndex.search(query, limit);
+            List<User> matches = new ArrayList<>(result.getIds().size());
+            for (Long id : result.getIds()) {
+                User user = users.findById(id);
+                if (user != null) {
+                    matches.add(user);
+                }
+            }
+            // Tells the client whether the results were cut at limit
+            Response.ResponseBuilder builder = Response.ok(matches)
+                .tag(tag)
+                .type(representationType())
+                .header("X-Total-Count", result.getTotal());
+            if (result.isTotalEstimated()) {
+                builder.header("X-Total-Count-Estimated", true);
+            }
+            return builder.build();
+        });
+    }
+    
+    /**
+     * GET /users/export
+     * Stream all users as one JSON array.
+     * 
+     * Users are written one at a time with a JsonGenerator straight onto the
+     * response stream and flushed in small batches, so heap usage stays constant
+     * regardless of the number of users. A slow client blocks the write, which
+     * in turn slows down the export (natural backpressure).
+     */
+    @GET
+    @Path("/export")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response exportUsers() {
+        EntityTag tag = collectionTag();
+        Response notModified = checkPreconditions(tag);
+        if (notModified != null) {
+            return notModified;
+        }
+        
+        // Flushing is batched below instead of after every value
+        ObjectWriter writer = objectMapper().writerFor(User.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        
+        StreamingOutput stream = output -> {
+            try (JsonGenerator generator = writer.createGenerator(output)) {
+                generator.writeStartArray();
+                int written = 0;
+                Iterator<User> iterator = users.iterateFrom(0L);
+                while (iterator.hasNext()) {
+                    writer.writeValue(generator, iterator.next());
+                    if (++written % EXPORT_FLUSH_INTERVAL == 0) {
+                        generator.flush();
+                    }
+                }
+                generator.writeEndArray();
+            }
+        };
+        return ok(stream, tag);
+    }
+    
+    /**
+     * GET /users/changes?since=&limit=
+     * Delta sync: the writes after a store version, oldest first.
+     * 
+     * A mirror starts with the version from GET /users/changes (no since),
+     * then reads the full list, then keeps asking for changes since the last
+     * version it got. Writes between the two steps show up again as changes,
+     * which is harmless since applying them twice gives the same result.
+     * 
+     * 410 Gone means the changelog no longer reaches back that far (or the
+     * users were cleared): the client has to read the full list again.
+     */
+    @GET
+    @Path("/changes")
+    @Produces({MediaType.APPLICATION_JSON, SmileProvider.SMILE, CborProvider.CBOR})
+    public Response getChanges(@QueryParam("since") Long since,
+                               @QueryParam("limit") @DefaultValue(DEFAULT_CHANGES) int limit) {
+        if (limit < 1 || limit > MAX_CHANGES) {
+            return Response.status(400)
+                .entity("limit must be between 1 and " + MAX_CHANGES)
+                .build();
+        }
+        if (since == null) {
+            return Response.ok(new UserChanges(storeVersion.get(), false, new ArrayList<>())).build();
+        }
+        
+        // One extra change tells whether there are more
+        List<UserChange> changes = storeVersion.changesSince(since, limit + 1);
+        if (changes == null) {
+            return Response.status(Response.Status.GONE)
+                .entity("Changes since version " + since + " are no longer available, read /users again")
+                .build();
+        }
+        boolean hasMore = changes.size() > limit;
+        if (hasMore) {
+            changes = changes.subList(0, limit);
+        }
+        long version = changes.isEmpty() ? since : changes.get(changes.size() - 1).getVersion();
+        return Response.ok(new UserChanges(version, hasMore, changes)).build();
     }
     
     /**
-     * GET /users
-     * Return all users
+     * GET /users/events
+     * Server-Sent Events stream of writes: one event per create, update or
+     * delete, named after the operation, with the store version as id and a
+     * UserChange as JSON data.
+     * 
+     * On reconnect the browser (or any SSE client) sends Last-Event-ID and
+     * the stream continues after that version, see UserEventBroadcaster.
      */
     @GET
-    public Response getAllUsers() {
-        return ok(new ArrayList<>(users.values()));
+    @Path("/events")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamEvents(@Context SseEventSink sink, @Context Sse sse,
+                             @HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) Long lastEventId) {
+        eventBroadcaster.subscribe(sink, sse, lastEventId);
     }
     
     /**
      * GET /users/{id}
      * Return specific user or 404
+     * 
+     * The ETag is the user's version, with a suffix for media types other
+     * than compact JSON. A client that sends it back in If-None-Match gets
+     * 304 Not Modified (no body) while the user is unchanged.
      */
     @GET
     @Path("/{id}")
-    public Response getUserById(@PathParam("id") Long id) {
-        User user = users.get(id);
-        if (user == null) {
-            return Response.status(404).entity("User not found").build();
-        }
-        return ok(user);
+    public void getUserById(@PathParam("id") Long id, @Suspended AsyncResponse response) {
+        async(response, () -> {
+            User user = users.findById(id);
+            if (user == null) {
+                return Response.status(404).entity("User not found").build();
+            }
+            EntityTag tag = entityTag(user.getVersion());
+            Response notModified = checkPreconditions(tag);
+            if (notModified != null) {
+                return notModified;
+            }
+            return ok(user, tag);
+        });
     }
     
     /**
@@ -62,53 +341,306 @@ public class UserResource extends AbstractResource {
      * Return 201 with Location header
      */
     @POST
-    public Response createUser(User user) {
-        // Generate ID and set creation timestamp
-        Long id = idGenerator.getAndIncrement();
-        user.setId(id);
-        user.setCreatedAt(LocalDateTime.now());
-        
-        // Store the user
-        users.put(id, user);
+    public void createUser(User user, @Suspended AsyncResponse response) {
+        async(response, () -> {
+            // The repository generates the ID, sets the creation timestamp and version 1
+            User stored = users.create(user);
+            
+            // Return 201 Created with location header and entity
+            // Using helper method from AbstractResource for dynamic URI building
+            return created(stored, stored.getId(), entityTag(stored.getVersion()));
+        });
+    }
+    
+    /**
+     * POST /users/batch
+     * Apply a list of create/update/delete operations in one request.
+     * 
+     * Saves the per-request overhead (HTTP round trip, Jersey dispatch,
+     * filters, Location URI building) of individual calls. Operations are
+     * applied in order and independently: one failing doesn't stop the
+     * rest. Returns 200 with one result per operation.
+     * 
+     * Not offered as protobuf: user.proto only describes users.
+     */
+    @POST
+    @Path("/batch")
+    @Produces({MediaType.APPLICATION_JSON, SmileProvider.SMILE, CborProvider.CBOR})
+    @Consumes({MediaType.APPLICATION_JSON, SmileProvider.SMILE, CborProvider.CBOR})
+    public void batchUsers(List<BatchOperation> operations,
+                           @Suspended AsyncResponse response) {
+        async(response, () -> {
+            if (operations == null || operations.isEmpty()) {
+                return Response.status(400).entity("At least one operation is required").build();
+            }
+            if (operations.size() > MAX_BATCH_SIZE) {
+                return Response.status(400)
+                    .entity("A batch may contain at most " + MAX_BATCH_SIZE + " operations")
+                    .build();
+            }
+            
+            List<BatchResult> results = users.batch(() -> {
+                List<BatchResult> applied = new ArrayList<>(operations.size());
+                for (int i = 0; i < operations.size(); i++) {
+                    applied.add(apply(i, operations.get(i)));
+                }
+                return applied;
+            });
+            return ok(results);
+        });
+    }
+    
+    /**
+     * POST /users/import
+     * Bulk-load users from newline-delimited JSON, one user per line.
+     * 
+     * The body is read with a streaming JsonParser, so only one chunk of
+     * users is held in memory however large the upload is. Each chunk is
+     * created with a single users.batch() call, then a progress line
+     * (ImportProgress, also NDJSON) is written and flushed. Invalid users
+     * are skipped and reported; malformed JSON ends the import.
+     */
+    @POST
+    @Path("/import")
+    @Consumes(NDJSON)
+    @Produces(NDJSON)
+    public Response importUsers(InputStream body) {
+        ObjectMapper mapper = objectMapper();
+        ObjectReader reader = mapper.readerFor(User.class);
+        // One JSON document per line
+        ObjectWriter writer = mapper.writerFor(ImportProgress.class)
+            .without(SerializationFeature.INDENT_OUTPUT);
         
-        // Return 201 Created with location header and entity
-        // Using helper method from AbstractResource for dynamic URI building
-        return created(user, id);
+        StreamingOutput stream = output -> {
+            try (JsonParser parser = reader.createParser(body);
+                 JsonGenerator generator = writer.createGenerator(output)) {
+                ImportProgress progress = new ImportProgress();
+                List<User> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+                try {
+                    while (parser.nextToken() != null) {
+                        long record = progress.getProcessed() + 1;
+                        int line = parser.getTokenLocation().getLineNr();
+                        progress.setProcessed(record);
+                        try {
+                            User user = reader.readValue(parser);
+                            String error = validateForImport(user);
+                            if (error == null) {
+                                chunk.add(user);
+                            } else {
+                                reportImportError(progress, "record " + record + " (line " + line + "): " + error);
+                            }
+                        } catch (JsonMappingException e) {
+                            // Well-formed JSON that isn't a user: skip the rest of it
+                            reportImportError(progress, "record " + record + " (line " + line + "): "
+                                + e.getOriginalMessage());
+                            while (!parser.getParsingContext().inRoot() && parser.nextToken() != null) {
+                                // skip
+                            }
+                        }
+                        if (record % IMPORT_CHUNK_SIZE == 0) {
+                            importChunk(chunk, progress);
+                            writeProgress(writer, generator, progress);
+                        }
+                    }
+                } catch (JsonProcessingException e) {
+                    reportImportError(progress, "line " + e.getLocation().getLineNr()
+                        + ": malformed JSON, import stopped: " + e.getOriginalMessage());
+                }
+                importChunk(chunk, progress);
+                progress.setDone(true);
+                writeProgress(writer, generator, progress);
+            }
+        };
+        return ok(stream);
     }
     
     /**
      * PUT /users/{id}
      * Update existing user or return 404
+     * 
+     * With If-Match the update only happens if the user still has that
+     * ETag (version); otherwise 412 Precondition Failed, so concurrent
+     * editors can't silently overwrite each other.
      */
     @PUT
     @Path("/{id}")
-    public Response updateUser(@PathParam("id") Long id, User user) {
-        // Check if user exists
-        if (!users.containsKey(id)) {
-            return Response.status(404).entity("User not found").build();
-        }
-        
-        // Ensure ID matches
-        user.setId(id);
-        
-        // Update the user
-        users.put(id, user);
-        
-        return ok(user);
+    public void updateUser(@PathParam("id") Long id, User user,
+                           @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch,
+                           @Suspended AsyncResponse response) {
+        async(response, () -> {
+            User current = users.findById(id);
+            if (current == null) {
+                return Response.status(404).entity("User not found").build();
+            }
+            Response failed = checkPreconditions(entityTag(current.getVersion()));
+            if (failed != null) {
+                return failed;
+            }
+            
+            // Update the user (the repository ensures the ID matches)
+            User updated;
+            try {
+                updated = users.update(id, user, expectedVersion(ifMatch, current));
+            } catch (VersionConflictException e) {
+                // Modified by someone else after the precondition check
+                return preconditionFailed(e);
+            }
+            if (updated == null) {
+                return Response.status(404).entity("User not found").build();
+            }
+            
+            return ok(updated, entityTag(updated.getVersion()));
+        });
     }
     
     /**
      * DELETE /users/{id}
-     * Delete user, return 204 or 404
+     * Delete user, return 204 or 404 (412 if If-Match doesn't match)
      */
     @DELETE
     @Path("/{id}")
-    public Response deleteUser(@PathParam("id") Long id) {
-        User removed = users.remove(id);
-        if (removed == null) {
-            return Response.status(404).entity("User not found").build();
+    public void deleteUser(@PathParam("id") Long id,
+                           @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch,
+                           @Suspended AsyncResponse response) {
+        async(response, () -> {
+            User current = users.findById(id);
+            if (current == null) {
+                return Response.status(404).entity("User not found").build();
+            }
+            Response failed = checkPreconditions(entityTag(current.getVersion()));
+            if (failed != null) {
+                return failed;
+            }
+            
+            try {
+                if (!users.delete(id, expectedVersion(ifMatch, current))) {
+                    return Response.status(404).entity("User not found").build();
+                }
+            } catch (VersionConflictException e) {
+                return preconditionFailed(e);
+            }
+            // Using helper method from AbstractResource
+            return noContent();
+        });
+    }
+    
+    private BatchResult apply(int index, BatchOperation operation) {
+        String op = operation != null ? operation.getOp() : null;
+        if (op == null) {
+            return new BatchResult(index, null, 400, null, "op is required");
         }
-        // Using helper method from AbstractResource
-        return noContent();
+        Long id = operation.getId();
+        User user = operation.getUser();
+        
+        switch (op) {
+            case BatchOperation.CREATE:
+                if (user == null) {
+                    return new BatchResult(index, op, 400, null, "user is required");
+                }
+                return new BatchResult(index, op, 201, users.create(user).getId(), null);
+            case BatchOperation.UPDATE:
+                if (id == null || user == null) {
+                    return new BatchResult(index, op, 400, id, "id and user are required");
+                }
+                if (users.update(id, user) == null) {
+                    return new BatchResult(index, op, 404, id, "User not found");
+                }
+                return new BatchResult(index, op, 200, id, null);
+            case BatchOperation.DELETE:
+                if (id == null) {
+                    return new BatchResult(index, op, 400, null, "id is required");
+                }
+                if (!users.delete(id)) {
+                    return new BatchResult(index, op, 404, id, "User not found");
+                }
+                return new BatchResult(index, op, 204, id, null);
+            default:
+                return new BatchResult(index, op, 400, id, "Unknown op: " + op);
+        }
+    }
+    
+    private EntityTag collectionTag() {
+        return representationTag(storeVersion.tag());
+    }
+    
+    // The precondition check passed, so an If-Match header matched the current version
+    private static long expectedVersion(String ifMatch, User current) {
+        return ifMatch != null ? current.getVersion() : UserRepository.ANY_VERSION;
+    }
+    
+    private Response preconditionFailed(VersionConflictException e) {
+        return Response.status(Response.Status.PRECONDITION_FAILED)
+            .tag(entityTag(e.getCurrentVersion()))
+            .entity("User was modified by another request")
+            .build();
+    }
+    
+    private static String validateForImport(User user) {
+        if (user == null) {
+            return "user is required";
+        }
+        if (user.getUsername() == null || user.getUsername().trim().isEmpty()) {
+            return "username is required";
+        }
+        if (user.getEmail() != null && user.getEmail().indexOf('@') < 0) {
+            return "email is invalid";
+        }
+        return null;
+    }
+    
+    private void importChunk(List<User> chunk, ImportProgress progress) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        users.batch(() -> {
+            for (User user : chunk) {
+                // Ids are always assigned by the store
+                user.setId(null);
+                users.create(user);
+            }
+            return null;
+        });
+        progress.setCreated(progress.getCreated() + chunk.size());
+        chunk.clear();
+    }
+    
+    private static void reportImportError(ImportProgress progress, String error) {
+        progress.setFailed(progress.getFailed() + 1);
+        if (progress.getErrors().size() < MAX_IMPORT_ERRORS) {
+            progress.getErrors().add(error);
+        }
+    }
+    
+    private static void writeProgress(ObjectWriter writer, JsonGenerator generator,
+                                      ImportProgress progress) throws IOException {
+        writer.writeValue(generator, progress);
+        generator.writeRaw('\n');
+        generator.flush();
+        progress.getErrors().clear();
+    }
+    
+    private List<User> findByUsernameOrEmail(String username, String email) {
+        // Both given: users must match both
+        Set<Long> ids = new TreeSet<>(username != null
+            ? userIndex.findByUsername(username)
+            : userIndex.findByEmail(email));
+        if (username != null && email != null) {
+            ids.retainAll(userIndex.findByEmail(email));
+        }
+        
+        List<User> matches = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            User user = users.findById(id);
+            if (user != null) {
+                matches.add(user);
+            }
+        }
+        return matches;
+    }
+    
+    private ObjectMapper objectMapper() {
+        ContextResolver<ObjectMapper> resolver =
+            providers.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE);
+        return resolver != null ? resolver.getContext(User.class) : new ObjectMapper();
     }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package com.dbh.training.rest;
+
+import com.dbh.training.rest.repositories.UserRepository;
+import com.dbh.training.rest.test.BaseIntegrationTest;
+import org.eclipse.jetty.client.AbstractConnectionPool;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpDestination;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.http.HttpClientTransportOverHTTP2;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HTTP/2 tests against the embedded server: h2c on the plain port and h2
+ * negotiated with ALPN on the TLS port, which only this test enables.
+ * 
+ * Run with: ./gradlew test --tests Http2IntegrationTest
+ * 
+ * The client may open only one connection. An event stream that never ends
+ * is kept open on it while other requests run: with HTTP/1.1 they would
+ * wait behind it, with HTTP/2 they are multiplexed as separate streams.
+ */
+public class Http2IntegrationTest extends BaseIntegrationTest {
+    
+    private static final int TLS_PORT = 8444;
+    private static final int REQUESTS = 10;
+    
+    // Hides BaseIntegrationTest.startServer() to add a TLS connector with a self-signed certificate
+    @BeforeAll
+    public static void startServer() throws Exception {
+        Map<String, String> tls = new LinkedHashMap<>();
+        tls.put("server.ssl.enabled", "true");
+        tls.put("server.ssl.port", String.valueOf(TLS_PORT));
+        tls.put("server.ssl.keystore.path",
+            Paths.get(Http2IntegrationTest.class.getResource("/test-keystore.p12").toURI()).toString());
+        tls.put("server.ssl.keystore.password", "changeit");
+        startServer(tls);
+    }
+    
+    @Override
+    @BeforeEach
+    public void setupTest() {
+        super.setupTest();
+        getService(UserRepository.class).clear();
+    }
+    
+    @Test
+    public void testCleartextRequestsAreMultiplexed() throws Exception {
+        HttpClient client = new HttpClient(new HttpClientTransportOverHTTP2(new HTTP2Client()));
+        assertMultiplexed(client, "http", TEST_PORT);
+    }
+    
+    @Test
+    public void testTlsNegotiatesHttp2WithAlpn() throws Exception {
+        // The test certificate is self-signed
+        SslContextFactory.Client sslContextFactory = new SslContextFactory.Client(true);
+        HttpClient client = new HttpClient(new HttpClientTransportOverHTTP2(new HTTP2Client()), sslContextFactory);
+        assertMultiplexed(client, "https", TLS_PORT);
+    }
+    
+    private void assertMultiplexed(HttpClient client, String scheme, int port) throws Exception {
+        client.setMaxConnectionsPerDestination(1);
+        client.start();
+        try {
+            String base = scheme + "://localhost:" + port + BASE_PATH;
+            
+            // Stays open until aborted
+            StringBuffer events = new StringBuffer();
+            CountDownLatch created = new CountDownLatch(1);
+            Request eventStream = client.newRequest(base + "/users/events")
+                .header("Accept", "text/event-stream");
+            eventStream.send(new Response.Listener.Adapter() {
+                @Override
+                public void onContent(Response response, ByteBuffer content) {
+                    events.append(StandardCharsets.UTF_8.decode(content));
+                    if (events.indexOf("event: create") >= 0) {
+                        created.countDown();
+                    }
+                }
+            });
+            
+            for (int i = 0; i < REQUESTS; i++) {
+                ContentResponse response = client.newRequest(base + "/health")
+                    .timeout(5, TimeUnit.SECONDS)
+                    .send();
+                assertEquals(200, response.getStatus());
+                assertEquals(HttpVersion.HTTP_2, response.getVersion());
+            }
+            
+            ContentResponse post = client.POST(base + "/users")
+                .content(new StringContentProvider("application/json",
+                    "{\"username\":\"alice\",\"email\":\"alice@example.com\"}", StandardCharsets.UTF_8))
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+            assertEquals(201, post.getStatus());
+            
+            // The event stream was still being served alongside
+            assertTrue(created.await(5, TimeUnit.SECONDS), "No create event, got: " + events);
+            eventStream.abort(new Exception("Test done"));
+            
+            HttpDestination destination = (HttpDestination) client.getDestinations().get(0);
+            assertEquals(1, ((AbstractConnectionPool) destination.getConnectionPool()).getConnectionCount());
+        } finally {
+            client.stop();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.dbh.training.rest.config;
+
+import jnr.unixsocket.UnixServerSocketChannel;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.unixsocket.UnixSocketConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the Jetty server built from server.* properties.
+ */
+public class JettyConfigTest {
+    
+    @Test
+    public void testServerUsesConfiguredPoolAndConnector() throws Exception {
+        Properties settings = new Properties();
+        settings.setProperty("server.threads.min", "4");
+        settings.setProperty("server.threads.max", "20");
+        settings.setProperty("server.acceptors", "1");
+        settings.setProperty("server.selectors", "2");
+        settings.setProperty("server.idle.timeout.ms", "5000");
+        settings.setProperty("server.accept.queue.size", "64");
+        settings.setProperty("server.output.buffer.size", "8192");
+        
+        Server server = JettyConfig.createServer(0, new ApplicationProperties(settings));
+        QueuedThreadPool threadPool = (QueuedThreadPool) server.getThreadPool();
+        assertEquals(4, threadPool.getMinThreads());
+        assertEquals(20, threadPool.getMaxThreads());
+        
+        ServerConnector connector = (ServerConnector) server.getConnectors()[0];
+        assertEquals(1, connector.getAcceptors());
+        assertEquals(2, connector.getSelectorManager().getSelectorCount());
+        assertEquals(5000, connector.getIdleTimeout());
+        assertEquals(64, connector.getAcceptQueueSize());
+        assertEquals(8192, connector.getConnectionFactory(HttpConnectionFactory.class)
+            .getHttpConfiguration().getOutputBufferSize());
+        
+        server.start();
+        try {
+            Map<String, Object> stats = JettyConfig.threadPoolStats(threadPool);
+            // One acceptor and two selectors are leased from the pool
+            assertEquals(3, stats.get("leased"));
+            assertEquals(20, stats.get("maxThreads"));
+            assertTrue((Integer) stats.get("threads") >= 4);
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void testMinThreadsAboveMaxIsCapped() {
+        Properties settings = new Properties();
+        settings.setProperty("server.threads.min", "50");
+        settings.setProperty("server.threads.max", "10");
+        
+        QueuedThreadPool threadPool = JettyConfig.createThreadPool(new ApplicationProperties(settings));
+        assertEquals(10, threadPool.getMinThreads());
+        assertEquals(10, threadPool.getMaxThreads());
+    }
+    
+    @Test
+    public void testUnixSocketConnectorServesRequests(@TempDir Path directory) throws Exception {
+        File socket = directory.resolve("test.sock").toFile();
+        // Left behind by a killed process: must not prevent the start
+        try (UnixServerSocketChannel killed = UnixServerSocketChannel.open()) {
+            killed.socket().bind(new UnixSocketAddress(socket));
+        }
+        assertTrue(socket.exists());
+        Properties settings = new Properties();
+        settings.setProperty("server.unix.socket.enabled", "true");
+        settings.setProperty("server.unix.socket.path", socket.getPath());
+        
+        Server server = JettyConfig.createServer(0, new ApplicationProperties(settings));
+        assertTrue(Arrays.stream(server.getConnectors()).anyMatch(c -> c instanceof UnixSocketConnector));
+        // Only starting the server cleans up
+        assertTrue(socket.exists());
+        server.start();
+        try (UnixSocketChannel channel = UnixSocketChannel.open(new UnixSocketAddress(socket))) {
+            channel.write(ByteBuffer.wrap(
+                "GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII)));
+            ByteBuffer response = ByteBuffer.allocate(1024);
+            channel.read(response);
+            // No handler is installed, so Jetty answers 404
+            assertTrue(new String(response.array(), 0, response.position(), StandardCharsets.US_ASCII)
+                .startsWith("HTTP/1.1 404"));
+            
+            // A second server must not take the socket away from the running one
+            Server second = JettyConfig.createServer(0, new ApplicationProperties(settings));
+            try {
+                assertThrows(IllegalStateException.class, second::start);
+            } finally {
+                second.stop();
+            }
+            assertTrue(socket.exists());
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void testUnixSocketPathThatIsNotASocketFailsStartup(@TempDir Path directory) throws Exception {
+        Path file = Files.write(directory.resolve("data.txt"), "keep me".getBytes(StandardCharsets.US_ASCII));
+        Properties settings = new Properties();
+        settings.setProperty("server.unix.socket.enabled", "true");
+        settings.setProperty("server.unix.socket.path", file.toString());
+        
+        Server server = JettyConfig.createServer(0, new ApplicationProperties(settings));
+        try {
+            IllegalStateException e = assertThrows(IllegalStateException.class, server::start);
+            assertTrue(e.getMessage().contains("is not a socket"));
+        } finally {
+            server.stop();
+        }
+        assertTrue(Files.exists(file));
+    }
+}
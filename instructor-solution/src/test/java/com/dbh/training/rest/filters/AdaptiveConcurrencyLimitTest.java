@@ -0,0 +1,94 @@
+package com.dbh.training.rest.filters;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the AIMD concurrency limit behind AdmissionControlFilter.
+ */
+public class AdaptiveConcurrencyLimitTest {
+    
+    @Test
+    public void testRejectsAboveLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(true, 2, 1, 10, 1000, 0.9);
+        long start = System.nanoTime();
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(1, limit.rejectedCount());
+        
+        limit.release(start, false);
+        assertTrue(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+    }
+    
+    @Test
+    public void testOverloadCutsLimitOncePerRound() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(true, 100, 10, 1000, 1000, 0.9);
+        long start = System.nanoTime();
+        limit.tryAcquire();
+        limit.tryAcquire();
+        limit.release(start, true);
+        assertEquals(90, limit.getLimit());
+        // Admitted before the cut: does not cut again
+        limit.release(start, true);
+        assertEquals(90, limit.getLimit());
+        
+        long later = System.nanoTime();
+        limit.tryAcquire();
+        limit.release(later, true);
+        assertEquals(81, limit.getLimit());
+    }
+    
+    @Test
+    public void testSlowRequestsCutDownToMinimum() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(true, 20, 15, 1000, 0, 0.5);
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            limit.tryAcquire();
+            // Latency target 0: every request is too slow
+            limit.release(start, false);
+        }
+        assertEquals(15, limit.getLimit());
+    }
+    
+    @Test
+    public void testFastRequestsGrowLimitOnlyWhenInUse() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(true, 10, 1, 1000, 60000, 0.9);
+        // One request at a time never needs more than 10
+        for (int i = 0; i < 1000; i++) {
+            limit.tryAcquire();
+            limit.release(System.nanoTime(), false);
+        }
+        assertEquals(10, limit.getLimit());
+        
+        // Rounds that fill the limit raise it
+        for (int round = 0; round < 100; round++) {
+            long start = System.nanoTime();
+            int admitted = 0;
+            while (limit.tryAcquire()) {
+                admitted++;
+            }
+            for (int i = 0; i < admitted; i++) {
+                limit.release(start, false);
+            }
+        }
+        assertTrue(limit.getLimit() > 10, "limit: " + limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+    
+    @Test
+    public void testReleaseWithoutSampleLeavesLimitAlone() {
+        // Latency target 0: a sampled release would cut the limit
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(true, 2, 1, 10, 0, 0.5);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        
+        limit.releaseWithoutSample();
+        assertEquals(1, limit.getInFlight());
+        assertEquals(2, limit.getLimit());
+        assertTrue(limit.tryAcquire());
+    }
+}
@@ -0,0 +1,71 @@
+package com.dbh.training.rest.filters;
+
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.EntityTag;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for Accept-Encoding negotiation and the compressed body cache.
+ */
+public class CompressionInterceptorTest {
+    
+    @Test
+    public void testAcceptsGzip() {
+        assertTrue(CompressionInterceptor.acceptsGzip("gzip"));
+        assertTrue(CompressionInterceptor.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(CompressionInterceptor.acceptsGzip("*"));
+        assertFalse(CompressionInterceptor.acceptsGzip(null));
+        assertFalse(CompressionInterceptor.acceptsGzip("identity"));
+        assertFalse(CompressionInterceptor.acceptsGzip("br, gzip;q=0"));
+    }
+    
+    @Test
+    public void testGzipVariantOfEntityTag() {
+        assertEquals(new EntityTag("3--gzip"), CompressionInterceptor.gzipVariant(new EntityTag("3")));
+        assertEquals(new EntityTag("3--gzip", true), CompressionInterceptor.gzipVariant("W/\"3\""));
+    }
+    
+    @Test
+    public void testCacheReusesCompressedBytesForSameKey() throws IOException {
+        CompressionInterceptor.CompressedCache cache = new CompressionInterceptor.CompressedCache(2);
+        byte[] first = body("first");
+        
+        byte[] compressed = cache.compress("\"1\" application/json http://localhost/api/users", first);
+        assertSame(compressed, cache.compress("\"1\" application/json http://localhost/api/users", first));
+        assertEquals(new String(first, StandardCharsets.UTF_8), gunzip(compressed));
+        
+        // Other keys are compressed separately; the least recently used entry is evicted
+        assertNotSame(compressed, cache.compress("\"2\" application/json http://localhost/api/users", body("second")));
+        cache.compress("\"2\" application/json http://localhost/api/users?limit=1", body("third"));
+        assertEquals(2, cache.size());
+        assertNotSame(compressed, cache.compress("\"1\" application/json http://localhost/api/users", first));
+    }
+    
+    private static byte[] body(String name) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            json.append("{\"username\":\"").append(name).append(i).append("\"},");
+        }
+        return json.append("{}]").toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static String gunzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
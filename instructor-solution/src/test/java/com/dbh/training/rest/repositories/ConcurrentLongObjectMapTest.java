@@ -0,0 +1,105 @@
+package com.dbh.training.rest.repositories;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the primitive-keyed concurrent map used by the user store.
+ */
+public class ConcurrentLongObjectMapTest {
+    
+    @Test
+    public void testPutGetReplaceRemove() {
+        ConcurrentLongObjectMap<String> map = new ConcurrentLongObjectMap<>();
+        
+        assertNull(map.put(1L, "one"));
+        assertEquals("one", map.put(1L, "uno"));
+        assertEquals("uno", map.get(1L));
+        assertNull(map.get(2L));
+        
+        assertNull(map.replace(2L, "two"));
+        assertFalse(map.containsKey(2L));
+        assertEquals("uno", map.replace(1L, "eins"));
+        
+        // Key 0 and negative keys are ordinary keys
+        map.put(0L, "zero");
+        map.put(-5L, "minus five");
+        assertEquals("zero", map.get(0L));
+        assertEquals("minus five", map.get(-5L));
+        assertEquals(3, map.size());
+        
+        // Conditional variants compare the current value by identity
+        String current = map.get(1L);
+        assertFalse(map.replace(1L, new String("eins"), "one"));
+        assertTrue(map.replace(1L, current, "one"));
+        assertFalse(map.remove(1L, current));
+        assertEquals("one", map.get(1L));
+        
+        assertEquals("one", map.remove(1L));
+        assertNull(map.remove(1L));
+        assertEquals(2, map.size());
+        
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(0L));
+    }
+    
+    @Test
+    public void testGrowAndRemoveKeepProbeChainsIntact() {
+        // A single small segment forces many collisions and resizes
+        ConcurrentLongObjectMap<Long> map = new ConcurrentLongObjectMap<>(1, 2);
+        for (long key = 1; key <= 10_000; key++) {
+            map.put(key, key * 10);
+        }
+        for (long key = 1; key <= 10_000; key += 3) {
+            assertEquals(key * 10, map.remove(key));
+        }
+        for (long key = 1; key <= 10_000; key++) {
+            if (key % 3 == 1) {
+                assertNull(map.get(key));
+            } else {
+                assertEquals(key * 10, map.get(key));
+            }
+        }
+    }
+    
+    @Test
+    public void testConcurrentWritersAndReaders() throws Exception {
+        ConcurrentLongObjectMap<Long> map = new ConcurrentLongObjectMap<>();
+        int threads = 8;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long base = (long) t * perThread;
+                futures.add(executor.submit(() -> {
+                    for (long key = base; key < base + perThread; key++) {
+                        map.put(key, key);
+                        assertEquals(Long.valueOf(key), map.get(key));
+                    }
+                    for (long key = base; key < base + perThread; key += 2) {
+                        map.remove(key);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        
+        assertEquals(threads * perThread / 2, map.size());
+        for (long key = 0; key < (long) threads * perThread; key++) {
+            assertEquals(key % 2 == 0 ? null : Long.valueOf(key), map.get(key));
+        }
+    }
+}
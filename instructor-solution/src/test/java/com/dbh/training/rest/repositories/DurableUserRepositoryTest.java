@@ -0,0 +1,176 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests recovery of the write-ahead log and snapshots across "restarts"
+ * (closing and reopening the repository on the same directory).
+ */
+public class DurableUserRepositoryTest {
+    
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    
+    @TempDir
+    Path dataDir;
+    
+    @Test
+    public void testWritesSurviveRestart() throws IOException {
+        DurableUserRepository repository = open();
+        long alice = repository.create(new User("alice", "alice@example.com", "Alice", "Smith")).getId();
+        long bob = repository.create(new User("bob", "bob@example.com", "Bob", "Jones")).getId();
+        repository.update(alice, new User("alice", "alice@new.example.com", "Alice", "Smith"));
+        repository.delete(bob);
+        // Simulate a crash: reopen without close(), so no final snapshot is taken
+        // and the state comes from log replay only
+        repository = open();
+        assertEquals(1, repository.count());
+        assertEquals("alice@new.example.com", repository.findById(alice).getEmail());
+        assertEquals(2L, repository.findById(alice).getVersion());
+        assertNull(repository.findById(bob));
+        
+        // Ids are not reused after recovery
+        assertEquals(bob + 1, repository.create(new User("carol", null, null, null)).getId());
+        repository.close();
+    }
+    
+    @Test
+    public void testSnapshotTruncatesLogAndRecoversTail() throws IOException {
+        DurableUserRepository repository = open();
+        for (int i = 0; i < 2000; i++) {
+            repository.create(new User("user" + i, "user" + i + "@example.com", "First", "Last"));
+        }
+        long segmentsBefore = countFiles(dataDir.resolve("wal"));
+        assertTrue(segmentsBefore > 1, "test needs more than one log segment");
+        
+        repository.snapshot();
+        assertEquals(1, countFiles(dataDir.resolve("wal")));
+        
+        // Writes after the snapshot are only in the log tail
+        repository.delete(1);
+        repository.create(new User("late", null, null, null));
+        // Simulate a crash: reopen without close()
+        repository = open();
+        assertEquals(2000, repository.count());
+        assertNull(repository.findById(1));
+        assertEquals("late", repository.findById(2001).getUsername());
+        repository.close();
+    }
+    
+    @Test
+    public void testSnapshotKeepsIdsOfDeletedUsersReserved() throws IOException {
+        DurableUserRepository repository = open();
+        for (int i = 1; i <= 3; i++) {
+            repository.create(new User("user" + i, null, null, null));
+        }
+        repository.delete(3);
+        // The log entries for user 3 are dropped, the snapshot only holds users 1 and 2
+        repository.snapshot();
+        repository.close();
+        
+        repository = open();
+        assertEquals(2, repository.count());
+        assertEquals(4L, repository.create(new User("next", null, null, null)).getId());
+        repository.close();
+    }
+    
+    @Test
+    public void testClearIsLogged() throws IOException {
+        DurableUserRepository repository = open();
+        repository.create(new User("temp", null, null, null));
+        repository.clear();
+        repository.create(new User("kept", null, null, null));
+        repository.close();
+        
+        repository = open();
+        assertEquals(1, repository.count());
+        assertEquals("kept", repository.findById(1).getUsername());
+        repository.close();
+    }
+    
+    @Test
+    public void testConcurrentObservedWritersShareFsyncs() throws Exception {
+        DurableUserRepository durable = open();
+        ObservableUserRepository repository = new ObservableUserRepository(durable);
+        int threads = 8;
+        int writesPerThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < writesPerThread; i++) {
+                        repository.create(new User("user", null, null, null));
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(threads * writesPerThread, repository.count());
+        // Waiting for the fsync under the listener lock would force once per write
+        long forces = durable.logForceCount();
+        assertTrue(forces < threads * writesPerThread,
+            forces + " fsyncs for " + threads * writesPerThread + " writes");
+        durable.close();
+    }
+    
+    @Test
+    public void testWriteThatCannotBeLoggedIsNotApplied() throws IOException {
+        DurableUserRepository repository = open();
+        long alice = repository.create(new User("alice", "alice@example.com", "Alice", "Smith")).getId();
+        
+        // A record larger than a log segment can never be appended
+        char[] tooLong = new char[SEGMENT_SIZE];
+        Arrays.fill(tooLong, 'x');
+        User huge = new User(new String(tooLong), null, null, null);
+        assertThrows(UncheckedIOException.class, () -> repository.create(huge));
+        assertThrows(UncheckedIOException.class, () -> repository.update(alice, huge));
+        huge.setId(alice + 10);
+        assertThrows(UncheckedIOException.class, () -> repository.restore(huge));
+        assertEquals(1, repository.count());
+        assertEquals("alice", repository.findById(alice).getUsername());
+        assertEquals(1L, repository.findById(alice).getVersion());
+        assertNull(repository.findById(alice + 10));
+        
+        // A closed log refuses the small entries of deletes and clears as well
+        repository.close();
+        assertThrows(UncheckedIOException.class, () -> repository.delete(alice));
+        assertThrows(UncheckedIOException.class, repository::clear);
+        assertEquals(1, repository.count());
+        
+        DurableUserRepository reopened = open();
+        assertEquals(1, reopened.count());
+        assertEquals(1L, reopened.findById(alice).getVersion());
+        reopened.close();
+    }
+    
+    private DurableUserRepository open() throws IOException {
+        return new DurableUserRepository(new InMemoryUserRepository(), dataDir, SEGMENT_SIZE, true, 0);
+    }
+    
+    private static long countFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
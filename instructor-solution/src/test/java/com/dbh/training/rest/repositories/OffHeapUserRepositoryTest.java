@@ -0,0 +1,129 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the off-heap storage engine.
+ * 
+ * Uses tiny slabs so slab rollover and compaction are exercised with
+ * only a few thousand users.
+ */
+public class OffHeapUserRepositoryTest {
+    
+    private OffHeapUserRepository repository;
+    
+    @BeforeEach
+    public void setUp() {
+        repository = new OffHeapUserRepository(4096);
+    }
+    
+    @Test
+    public void testCreateAndFind() {
+        User created = repository.create(new User("alice", "alice@example.com", "Alice", "Smith"));
+        
+        User found = repository.findById(created.getId());
+        assertNotNull(found);
+        assertEquals("alice", found.getUsername());
+        assertEquals("alice@example.com", found.getEmail());
+        assertEquals("Alice", found.getFirstName());
+        assertEquals("Smith", found.getLastName());
+        assertEquals(created.getCreatedAt(), found.getCreatedAt());
+        assertNull(repository.findById(created.getId() + 1));
+    }
+    
+    @Test
+    public void testUpdateAndDelete() {
+        long id = repository.create(new User("bob", "bob@example.com", null, null)).getId();
+        
+        assertNotNull(repository.update(id, new User("bob", "new@example.com", "Bob", null)));
+        assertEquals("new@example.com", repository.findById(id).getEmail());
+        assertNull(repository.findById(id).getLastName());
+        assertNull(repository.update(id + 1, new User()));
+        
+        assertTrue(repository.delete(id));
+        assertFalse(repository.delete(id));
+        assertNull(repository.findById(id));
+        assertEquals(0, repository.count());
+    }
+    
+    @Test
+    public void testVersionsAndConditionalWrites() {
+        long id = repository.create(new User("dave", null, null, null)).getId();
+        assertEquals(1L, repository.findById(id).getVersion());
+        
+        assertEquals(2L, repository.update(id, new User("dave", "d@example.com", null, null)).getVersion());
+        assertEquals(3L, repository.update(id, new User("dave", "e@example.com", null, null), 2L).getVersion());
+        assertEquals(3L, repository.findById(id).getVersion());
+        
+        // Stale version: nothing is written
+        VersionConflictException conflict = assertThrows(VersionConflictException.class,
+            () -> repository.update(id, new User("stale", null, null, null), 2L));
+        assertEquals(3L, conflict.getCurrentVersion());
+        assertThrows(VersionConflictException.class, () -> repository.delete(id, 1L));
+        assertEquals("e@example.com", repository.findById(id).getEmail());
+        
+        assertTrue(repository.delete(id, 3L));
+        assertNull(repository.findById(id));
+    }
+    
+    @Test
+    public void testPagingSkipsDeletedUsers() {
+        for (int i = 1; i <= 10; i++) {
+            repository.create(new User("user" + i, null, null, null));
+        }
+        repository.delete(2);
+        repository.delete(3);
+        
+        List<User> page = repository.findPage(0, 3);
+        assertEquals(3, page.size());
+        assertEquals(1L, page.get(0).getId());
+        assertEquals(4L, page.get(1).getId());
+        assertEquals(5L, page.get(2).getId());
+        
+        assertEquals(5, repository.findPage(5, 100).size());
+    }
+    
+    @Test
+    public void testChurnRollsOverAndCompactsSlabs() {
+        for (int i = 0; i < 2000; i++) {
+            User user = repository.create(new User("user" + i, "user" + i + "@example.com", "First", "Last"));
+            repository.update(user.getId(), new User("user" + i, "changed" + i + "@example.com", "First", "Last"));
+            if (i % 2 == 0) {
+                repository.delete(user.getId());
+            }
+        }
+        
+        assertEquals(1000, repository.count());
+        assertEquals("changed1@example.com", repository.findById(2).getEmail());
+        assertEquals("changed1999@example.com", repository.findById(2000).getEmail());
+        
+        // Iteration crosses several internal scan batches and stays ordered
+        List<Long> ids = new ArrayList<>();
+        Iterator<User> iterator = repository.iterateFrom(0);
+        while (iterator.hasNext()) {
+            ids.add(iterator.next().getId());
+        }
+        assertEquals(1000, ids.size());
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1) < ids.get(i));
+        }
+    }
+    
+    @Test
+    public void testRestoreKeepsIdAndAdvancesGenerator() {
+        User restored = new User("carol", "carol@example.com", "Carol", "White");
+        restored.setId(42L);
+        repository.restore(restored);
+        
+        assertEquals("carol", repository.findById(42).getUsername());
+        assertEquals(43L, repository.create(new User()).getId());
+    }
+}
@@ -0,0 +1,36 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the simulated storage latency.
+ */
+public class SimulatedLatencyUserRepositoryTest {
+    
+    @Test
+    public void testBatchPaysTheLatencyOnce() {
+        UserRepository users = new SimulatedLatencyUserRepository(new InMemoryUserRepository(), 100);
+        
+        long start = System.nanoTime();
+        int created = users.batch(() -> {
+            for (int i = 0; i < 10; i++) {
+                User user = new User();
+                user.setUsername("batch" + i);
+                users.create(user);
+            }
+            return 10;
+        });
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        
+        assertEquals(10, created);
+        assertEquals(10, users.count());
+        // One pause of 100 ms instead of ten
+        assertTrue(elapsedMillis >= 100, "took " + elapsedMillis + " ms");
+        assertTrue(elapsedMillis < 500, "took " + elapsedMillis + " ms");
+    }
+}
@@ -0,0 +1,54 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that a damaged snapshot is skipped in favour of an older one.
+ */
+public class SnapshotFileTest {
+    
+    @TempDir
+    Path dataDir;
+    
+    @Test
+    public void testUndecodableRecordFallsBackToOlderSnapshot() throws IOException {
+        SnapshotFile.write(dataDir, 5, 3, Arrays.asList(user(1, "alice"), user(2, "bob")).iterator());
+        Path older = dataDir.resolve("snapshot-00000000000000000005.dat");
+        byte[] olderBytes = Files.readAllBytes(older);
+        SnapshotFile.write(dataDir, 9, 4,
+            Arrays.asList(user(3, "carol"), user(1, "alice"), user(2, "bob")).iterator());
+        // Writing deletes older snapshots; put it back as if the delete had not happened yet
+        Files.write(older, olderBytes);
+        
+        // Damage the format byte of the second record: carol is already restored by then
+        Path newer = dataDir.resolve("snapshot-00000000000000000009.dat");
+        byte[] newerBytes = Files.readAllBytes(newer);
+        int firstRecord = 4 + 8 + 8 + 4;
+        int secondRecord = firstRecord + ByteBuffer.wrap(newerBytes, firstRecord - 4, 4).getInt() + 4;
+        newerBytes[secondRecord] = 0x7f;
+        Files.write(newer, newerBytes);
+        
+        InMemoryUserRepository target = new InMemoryUserRepository();
+        assertEquals(5, SnapshotFile.load(dataDir, target));
+        assertEquals(2, target.count());
+        assertNull(target.findById(3));
+        assertEquals(3, target.nextId());
+    }
+    
+    private static User user(long id, String username) {
+        User user = new User(username, null, null, null);
+        user.setId(id);
+        user.setVersion(1L);
+        return user;
+    }
+}
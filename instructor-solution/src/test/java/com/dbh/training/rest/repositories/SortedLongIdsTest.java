@@ -0,0 +1,92 @@
+package com.dbh.training.rest.repositories;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the sorted primitive id index behind ordered user scans.
+ */
+public class SortedLongIdsTest {
+    
+    @Test
+    public void testReadAfterReturnsIdsInOrder() {
+        SortedLongIds ids = new SortedLongIds(id -> true, 16);
+        // Appends, an out-of-order insert and a duplicate
+        for (long id : new long[] {1, 2, 5, 8, 3, 5}) {
+            ids.add(id);
+        }
+        
+        long[] buffer = new long[3];
+        assertEquals(3, ids.readAfter(0, buffer));
+        assertArrayEquals(new long[] {1, 2, 3}, buffer);
+        assertEquals(2, ids.readAfter(3, buffer));
+        assertEquals(5, buffer[0]);
+        assertEquals(8, buffer[1]);
+        // An afterId that is not in the set starts at the next larger id
+        assertEquals(2, ids.readAfter(4, buffer));
+        assertEquals(5, buffer[0]);
+        assertEquals(0, ids.readAfter(8, buffer));
+        assertEquals(5, ids.size());
+    }
+    
+    @Test
+    public void testGrowsPastInitialCapacity() {
+        SortedLongIds ids = new SortedLongIds(id -> true, 16);
+        for (long id = 1; id <= 10_000; id++) {
+            ids.add(id);
+        }
+        
+        long[] buffer = new long[10_000];
+        assertEquals(10_000, ids.readAfter(0, buffer));
+        for (int i = 0; i < buffer.length; i++) {
+            assertEquals(i + 1, buffer[i]);
+        }
+    }
+    
+    @Test
+    public void testCompactionDropsOnlyRemovedIds() {
+        Set<Long> live = new HashSet<>();
+        SortedLongIds ids = new SortedLongIds(live::contains, 16);
+        for (long id = 1; id <= 5_000; id++) {
+            live.add(id);
+            ids.add(id);
+        }
+        
+        // Removed ids stay as stale entries until more than half are stale
+        for (long id = 1; id <= 2_500; id++) {
+            live.remove(id);
+            ids.removed();
+        }
+        assertEquals(5_000, ids.size());
+        
+        live.remove(2_501L);
+        ids.removed();
+        assertEquals(2_499, ids.size());
+        
+        long[] buffer = new long[1];
+        assertEquals(1, ids.readAfter(0, buffer));
+        assertEquals(2_502, buffer[0]);
+    }
+    
+    @Test
+    public void testReAddingAStaleIdKeepsItOnce() {
+        SortedLongIds ids = new SortedLongIds(id -> true, 16);
+        ids.add(1);
+        ids.add(2);
+        ids.removed();
+        ids.add(1);
+        
+        long[] buffer = new long[4];
+        assertEquals(2, ids.readAfter(0, buffer));
+        assertEquals(1, buffer[0]);
+        assertEquals(2, buffer[1]);
+        
+        ids.clear();
+        assertEquals(0, ids.size());
+        assertEquals(0, ids.readAfter(0, buffer));
+    }
+}
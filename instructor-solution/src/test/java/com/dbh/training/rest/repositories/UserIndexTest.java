@@ -0,0 +1,97 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the username and email indexes: updates must only touch
+ * the keys that changed.
+ */
+public class UserIndexTest {
+    
+    @Test
+    public void testUpdateWithUnchangedKeysKeepsThemVisible() throws Exception {
+        UserIndex index = new UserIndex();
+        User user = user(1L, "jdoe", "jdoe@example.com");
+        index.userCreated(user);
+        
+        // Readers don't take the store's lock, so they race the updates
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger misses = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                if (index.findByUsername("jdoe").isEmpty()) {
+                    misses.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+        try {
+            for (int i = 0; i < 100_000; i++) {
+                // Only the name changes; username and email stay the same
+                User updated = user(1L, "jdoe", "JDoe@example.com ");
+                updated.setFirstName("John " + i);
+                index.userUpdated(user, updated);
+                user = updated;
+            }
+        } finally {
+            done.set(true);
+            reader.join();
+        }
+        
+        assertEquals(0, misses.get());
+        assertEquals(Collections.singleton(1L), index.findByUsername("jdoe"));
+        assertEquals(Collections.singleton(1L), index.findByEmail("jdoe@example.com"));
+    }
+    
+    @Test
+    public void testUpdateWithChangedKeyMovesTheId() {
+        UserIndex index = new UserIndex();
+        User user = user(1L, "jdoe", "jdoe@example.com");
+        index.userCreated(user);
+        
+        index.userUpdated(user, user(1L, "johnd", "jdoe@example.com"));
+        
+        assertTrue(index.findByUsername("jdoe").isEmpty());
+        assertEquals(Collections.singleton(1L), index.findByUsername("johnd"));
+        assertEquals(Collections.singleton(1L), index.findByEmail("jdoe@example.com"));
+    }
+    
+    @Test
+    public void testUsernameMovingBetweenUsers() {
+        UserIndex index = new UserIndex();
+        User first = user(1L, "alice", "a@example.com");
+        User second = user(2L, "bob", "b@example.com");
+        index.userCreated(first);
+        index.userCreated(second);
+        
+        // Bob takes over "alice" before she renames herself: both hold it for a moment
+        User secondRenamed = user(2L, "alice", "b@example.com");
+        index.userUpdated(second, secondRenamed);
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), index.findByUsername("alice"));
+        assertTrue(index.findByUsername("bob").isEmpty());
+        
+        // Alice's rename must not drop Bob's claim on "alice"
+        index.userUpdated(first, user(1L, "alice2", "a@example.com"));
+        assertEquals(Collections.singleton(2L), index.findByUsername("alice"));
+        assertEquals(Collections.singleton(1L), index.findByUsername("alice2"));
+        
+        index.userDeleted(secondRenamed);
+        assertTrue(index.findByUsername("alice").isEmpty());
+        assertTrue(index.findByEmail("b@example.com").isEmpty());
+    }
+    
+    private static User user(long id, String username, String email) {
+        User user = new User(username, email, "First", "Last");
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,113 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the serialized-response cache: keys, the byte bound and
+ * invalidation on writes.
+ */
+public class UserResponseCacheTest {
+    
+    private static final String JSON = "application/json";
+    
+    @Test
+    public void testHitsOnlyForSameVersionAndMediaType() {
+        UserResponseCache cache = new UserResponseCache(1024 * 1024);
+        byte[] body = new byte[] {1, 2, 3};
+        cache.put(1, 1, JSON, body, cache.generation());
+        
+        assertSame(body, cache.get(1, 1, JSON));
+        assertNull(cache.get(1, 2, JSON));
+        assertNull(cache.get(1, 1, "application/cbor"));
+        assertNull(cache.get(2, 1, JSON));
+        assertEquals(1, cache.hits());
+        assertEquals(3, cache.misses());
+    }
+    
+    @Test
+    public void testWritesInvalidateOnlyTheWrittenUser() {
+        UserResponseCache cache = new UserResponseCache(1024 * 1024);
+        long seen = cache.generation();
+        cache.put(1, 1, JSON, new byte[10], seen);
+        cache.put(2, 1, JSON, new byte[10], seen);
+        
+        cache.userUpdated(user(1L, 1L), user(1L, 2L));
+        cache.userCreated(user(3L, 1L));
+        cache.userDeleted(user(4L, 1L));
+        assertNull(cache.get(1, 1, JSON));
+        assertNotNull(cache.get(2, 1, JSON));
+        
+        // Read before those writes: still stored, the version tells the bodies apart
+        assertEquals(seen, cache.generation());
+        cache.put(1, 2, JSON, new byte[10], seen);
+        assertNotNull(cache.get(1, 2, JSON));
+    }
+    
+    @Test
+    public void testRestoreAndClearRejectStaleBodies() {
+        UserResponseCache cache = new UserResponseCache(1024 * 1024);
+        long seen = cache.generation();
+        
+        // Same id and version, other data: the body read before must not be stored
+        cache.userRestored(user(1L, 1L), user(1L, 1L));
+        cache.put(1, 1, JSON, new byte[10], seen);
+        assertNull(cache.get(1, 1, JSON));
+        
+        seen = cache.generation();
+        cache.put(1, 1, JSON, new byte[10], seen);
+        cache.usersCleared();
+        assertNull(cache.get(1, 1, JSON));
+        cache.put(1, 1, JSON, new byte[10], seen);
+        assertNull(cache.get(1, 1, JSON));
+    }
+    
+    @Test
+    public void testEvictsLeastRecentlyUsedWhenOverBudget() {
+        UserResponseCache cache = new UserResponseCache(16 * 4096);
+        for (long id = 1; id <= 1000; id++) {
+            cache.put(id, 1, JSON, new byte[1000], cache.generation());
+        }
+        
+        long bytes = (Long) cache.stats().get("bytes");
+        assertTrue(bytes <= 16 * 4096, "bytes: " + bytes);
+        assertTrue((Long) cache.stats().get("evictions") > 0);
+        assertNotNull(cache.get(1000, 1, JSON));
+        assertNull(cache.get(1, 1, JSON));
+        
+        // Bodies larger than a segment are never stored
+        cache.put(5000, 1, JSON, new byte[8192], cache.generation());
+        assertNull(cache.get(5000, 1, JSON));
+    }
+    
+    @Test
+    public void testBytesCountEachEntryOverheadOnce() {
+        UserResponseCache cache = new UserResponseCache(1024 * 1024);
+        long seen = cache.generation();
+        cache.put(1, 1, JSON, new byte[100], seen);
+        cache.put(1, 1, "application/cbor", new byte[60], seen);
+        cache.put(2, 1, JSON, new byte[200], seen);
+        // Replacing a body only counts the difference
+        cache.put(2, 1, JSON, new byte[150], seen);
+        
+        assertEquals(2L, cache.stats().get("entries"));
+        assertEquals(100L + 60 + 150 + 2 * UserResponseCache.ENTRY_OVERHEAD, cache.stats().get("bytes"));
+        
+        // A new version replaces the entry and its bodies
+        cache.put(1, 2, JSON, new byte[10], seen);
+        assertEquals(10L + 150 + 2 * UserResponseCache.ENTRY_OVERHEAD, cache.stats().get("bytes"));
+        
+        cache.invalidate(1);
+        cache.invalidate(2);
+        assertEquals(0L, cache.stats().get("bytes"));
+    }
+    
+    private static User user(long id, long version) {
+        User user = new User("user" + id, null, null, null);
+        user.setId(id);
+        user.setVersion(version);
+        return user;
+    }
+}
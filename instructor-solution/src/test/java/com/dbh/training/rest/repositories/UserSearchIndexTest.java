@@ -0,0 +1,113 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.models.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the type-ahead search index: AND of the terms over every
+ * match, ranking, the reported total and the bounded scan for common prefixes.
+ */
+public class UserSearchIndexTest {
+    
+    @Test
+    public void testIntersectionSeesEveryMatchOfACommonPrefix() {
+        UserSearchIndex index = new UserSearchIndex();
+        // 20,000 users share the prefix "user"; only the last ones are named Zed
+        for (long id = 1; id <= 20_000; id++) {
+            index.userCreated(user(id, "user" + id, id > 19_998 ? "Zed" : "Anna"));
+        }
+        
+        UserSearchIndex.Matches matches = index.search("us zed", 10);
+        assertEquals(Arrays.asList(19_999L, 20_000L), matches.getIds());
+        assertEquals(2, matches.getTotal());
+    }
+    
+    @Test
+    public void testRanksExactMatchesFirstAndReportsTheTotal() {
+        UserSearchIndex index = new UserSearchIndex();
+        index.userCreated(user(1L, "jdoe", "John"));
+        index.userCreated(user(2L, "jo", "Jo"));
+        index.userCreated(user(3L, "jonas", "Jonas"));
+        
+        UserSearchIndex.Matches matches = index.search("jo", 2);
+        assertEquals(Arrays.asList(2L, 1L), matches.getIds());
+        assertEquals(3, matches.getTotal());
+        
+        assertTrue(index.search("jo smith", 10).getIds().isEmpty());
+        assertEquals(0, index.search("jo smith", 10).getTotal());
+    }
+    
+    @Test
+    public void testOneCharacterQueryOverALargeIndexStaysBounded() {
+        UserSearchIndex index = new UserSearchIndex();
+        int users = 200_000;
+        for (long id = 1; id <= users; id++) {
+            index.userCreated(user(id, "user" + id, "a" + id));
+        }
+        index.userCreated(user(users + 1L, "a", "Exact"));
+        
+        UserSearchIndex.Matches matches = index.search("a", 10);
+        assertEquals(10, matches.getIds().size());
+        // The exact token match ranks first, the rest come from the first prefix tokens
+        assertEquals(Long.valueOf(users + 1L), matches.getIds().get(0));
+        assertTrue(matches.isTotalEstimated());
+        assertTrue(matches.getTotal() >= 10);
+        // Stopped at the limit instead of visiting all 200,001 matches
+        assertTrue(matches.getScanned() <= 10, "scanned " + matches.getScanned());
+        
+        // Two common terms: the scan still stops once limit matches are found
+        UserSearchIndex.Matches both = index.search("us a", 10);
+        assertEquals(10, both.getIds().size());
+        assertTrue(both.isTotalEstimated());
+        assertTrue(both.getScanned() <= 20, "scanned " + both.getScanned());
+    }
+    
+    @Test
+    public void testUpdateWithUnchangedTokensKeepsTheUserFindable() throws Exception {
+        UserSearchIndex index = new UserSearchIndex();
+        User user = user(1L, "jdoe", "John");
+        index.userCreated(user);
+        
+        // Searches don't take the store's lock, so they race the updates
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger misses = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                if (index.search("jdoe", 10).getIds().isEmpty()) {
+                    misses.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                // Username stays, first name changes
+                User updated = user(1L, "jdoe", i % 2 == 0 ? "Jon" : "John");
+                index.userUpdated(user, updated);
+                user = updated;
+            }
+        } finally {
+            done.set(true);
+            reader.join();
+        }
+        
+        assertEquals(0, misses.get());
+        assertEquals(Arrays.asList(1L), index.search("jdoe john", 10).getIds());
+        assertTrue(index.search("jon", 10).getIds().isEmpty());
+        
+        index.userDeleted(user);
+        assertTrue(index.search("jdoe", 10).getIds().isEmpty());
+    }
+    
+    private static User user(long id, String username, String firstName) {
+        User user = new User(username, null, firstName, null);
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,70 @@
+package com.dbh.training.rest.repositories;
+
+import com.dbh.training.rest.dto.UserChange;
+import com.dbh.training.rest.models.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the store version and its ring-buffer changelog.
+ */
+public class UserStoreVersionTest {
+    
+    @Test
+    public void testChangesSinceVersion() {
+        UserStoreVersion storeVersion = new UserStoreVersion(16);
+        long start = storeVersion.get();
+        User alice = user(1L, 1L);
+        storeVersion.userCreated(alice);
+        storeVersion.userUpdated(alice, user(1L, 2L));
+        storeVersion.userDeleted(user(1L, 2L));
+        assertEquals(start + 3, storeVersion.get());
+        
+        List<UserChange> changes = storeVersion.changesSince(start, 100);
+        assertEquals(3, changes.size());
+        assertEquals(UserChange.CREATE, changes.get(0).getOp());
+        assertEquals(start + 1, changes.get(0).getVersion());
+        assertEquals(UserChange.UPDATE, changes.get(1).getOp());
+        assertEquals(2L, changes.get(1).getUserVersion());
+        assertEquals(UserChange.DELETE, changes.get(2).getOp());
+        assertNull(changes.get(2).getUserVersion());
+        
+        assertEquals(1, storeVersion.changesSince(start, 1).size());
+        assertEquals(start + 3, storeVersion.changesSince(start + 2, 100).get(0).getVersion());
+        assertTrue(storeVersion.changesSince(start + 3, 100).isEmpty());
+        // Not a version of this store (yet)
+        assertNull(storeVersion.changesSince(start + 4, 100));
+    }
+    
+    @Test
+    public void testRolledOverAndClearedChangelogIsGone() {
+        UserStoreVersion storeVersion = new UserStoreVersion(4);
+        long start = storeVersion.get();
+        for (long id = 1; id <= 10; id++) {
+            storeVersion.userCreated(user(id, 1L));
+        }
+        
+        // Only the last 4 writes are kept
+        assertNull(storeVersion.changesSince(start, 100));
+        assertNull(storeVersion.changesSince(start + 5, 100));
+        List<UserChange> changes = storeVersion.changesSince(start + 6, 100);
+        assertEquals(4, changes.size());
+        assertEquals(7L, changes.get(0).getId());
+        assertEquals(10L, changes.get(3).getId());
+        
+        storeVersion.usersCleared();
+        assertNull(storeVersion.changesSince(start + 10, 100));
+        storeVersion.userCreated(user(1L, 1L));
+        assertEquals(1, storeVersion.changesSince(start + 11, 100).size());
+    }
+    
+    private static User user(Long id, Long version) {
+        User user = new User("user" + id, null, null, null);
+        user.setId(id);
+        user.setVersion(version);
+        return user;
+    }
+}
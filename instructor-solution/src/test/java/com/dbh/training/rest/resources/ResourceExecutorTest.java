@@ -0,0 +1,314 @@
+package com.dbh.training.rest.resources;
+
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Unit tests for the bounded resource executor: off-thread execution,
+ * 503 + Retry-After when pool and queue are full, and the answer on a
+ * timeout depending on whether the work had started.
+ */
+public class ResourceExecutorTest {
+    
+    @Test
+    public void testRunsWorkOffTheCallingThread() throws Exception {
+        ResourceExecutor executor = new ResourceExecutor(2, 10, 5000, 1);
+        try {
+            RecordingResponse response = new RecordingResponse();
+            executor.execute(response, () -> Response.ok(Thread.currentThread().getName()).build());
+            
+            Response result = (Response) response.result.get(5, TimeUnit.SECONDS);
+            assertEquals(200, result.getStatus());
+            assertTrue(((String) result.getEntity()).startsWith("resource-"));
+        } finally {
+            executor.close();
+        }
+    }
+    
+    @Test
+    public void testRejectsWith503WhenQueueIsFull() throws Exception {
+        ResourceExecutor executor = new ResourceExecutor(1, 1, 5000, 7);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // One task blocks the only worker, one waits in the queue
+            for (int i = 0; i < 2; i++) {
+                executor.execute(new RecordingResponse(), () -> {
+                    awaitQuietly(release);
+                    return Response.ok().build();
+                });
+            }
+            RecordingResponse rejected = new RecordingResponse();
+            executor.execute(rejected, () -> Response.ok().build());
+            
+            Response result = (Response) rejected.result.getNow(null);
+            assertNotNull(result, "rejected on the calling thread");
+            assertEquals(503, result.getStatus());
+            assertEquals("7", result.getHeaderString("Retry-After"));
+            assertEquals(1, executor.rejectedCount());
+        } finally {
+            release.countDown();
+            executor.close();
+        }
+    }
+    
+    @Test
+    public void testTimeoutWhileQueuedSkipsTheWork() throws Exception {
+        ResourceExecutor executor = new ResourceExecutor(1, 1, 5000, 7);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean ran = new AtomicBoolean();
+        try {
+            executor.execute(new RecordingResponse(), () -> {
+                awaitQuietly(release);
+                return Response.ok().build();
+            });
+            RecordingResponse queued = new RecordingResponse();
+            executor.execute(queued, () -> {
+                ran.set(true);
+                return Response.ok().build();
+            });
+            queued.timeOut();
+            
+            Response result = (Response) queued.result.getNow(null);
+            assertEquals(503, result.getStatus());
+            assertEquals("7", result.getHeaderString("Retry-After"));
+            
+            release.countDown();
+            RecordingResponse after = new RecordingResponse();
+            executor.execute(after, () -> Response.ok().build());
+            after.result.get(5, TimeUnit.SECONDS);
+            assertFalse(ran.get(), "timed out work must not run");
+        } finally {
+            release.countDown();
+            executor.close();
+        }
+    }
+    
+    @Test
+    public void testTimeoutWhileRunningIsNotRetryable() throws Exception {
+        ResourceExecutor executor = new ResourceExecutor(1, 1, 5000, 7);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            RecordingResponse running = new RecordingResponse();
+            executor.execute(running, () -> {
+                started.countDown();
+                awaitQuietly(release);
+                return Response.ok().build();
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            running.timeOut();
+            
+            // The work may still change the store: no hint that a retry is safe
+            Response result = (Response) running.result.getNow(null);
+            assertEquals(504, result.getStatus());
+            assertNull(result.getHeaderString("Retry-After"));
+        } finally {
+            release.countDown();
+            executor.close();
+        }
+    }
+    
+    @Test
+    public void testWithoutThreadsRunsOnCallingThread() {
+        ResourceExecutor executor = new ResourceExecutor(0, 0, 5000, 1);
+        RecordingResponse response = new RecordingResponse();
+        executor.execute(response, () -> {
+            throw new IllegalStateException("boom");
+        });
+        assertTrue(response.result.getNow(null) instanceof IllegalStateException);
+    }
+    
+    @Test
+    public void testErrorsResumeTheResponse() {
+        ResourceExecutor executor = new ResourceExecutor(0, 0, 5000, 1);
+        RecordingResponse response = new RecordingResponse();
+        executor.execute(response, () -> {
+            throw new AssertionError("boom");
+        });
+        assertTrue(response.result.getNow(null) instanceof AssertionError);
+        
+        // Fatal errors are passed on once the response is resumed
+        RecordingResponse fatal = new RecordingResponse();
+        assertThrows(OutOfMemoryError.class, () -> executor.execute(fatal, () -> {
+            throw new OutOfMemoryError("simulated");
+        }));
+        assertTrue(fatal.result.getNow(null) instanceof OutOfMemoryError);
+    }
+    
+    @Test
+    public void testVirtualThreadsNeedJava21() {
+        assumeFalse(virtualThreadsSupported(), "running on Java 21+");
+        assertThrows(IllegalStateException.class, () -> ResourceExecutor.virtualThreads(10, 5000, 1));
+    }
+    
+    @Test
+    public void testRunsWorkOnVirtualThreadsUpToTheLimit() throws Exception {
+        assumeTrue(virtualThreadsSupported(), "virtual threads need Java 21+");
+        ResourceExecutor executor = ResourceExecutor.virtualThreads(2, 5000, 3);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            RecordingResponse response = new RecordingResponse();
+            executor.execute(response, () -> Response.ok(isVirtual(Thread.currentThread())).build());
+            Response result = (Response) response.result.get(5, TimeUnit.SECONDS);
+            assertEquals(200, result.getStatus());
+            assertEquals(Boolean.TRUE, result.getEntity());
+            
+            // Two requests in flight use up the limit, the third is rejected right away
+            CountDownLatch started = new CountDownLatch(2);
+            for (int i = 0; i < 2; i++) {
+                executor.execute(new RecordingResponse(), () -> {
+                    started.countDown();
+                    awaitQuietly(release);
+                    return Response.ok().build();
+                });
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            RecordingResponse rejected = new RecordingResponse();
+            executor.execute(rejected, () -> Response.ok().build());
+            Response rejection = (Response) rejected.result.getNow(null);
+            assertNotNull(rejection, "rejected on the calling thread");
+            assertEquals(503, rejection.getStatus());
+            assertEquals("3", rejection.getHeaderString("Retry-After"));
+            assertEquals(1, executor.rejectedCount());
+            
+            // Finished requests give their slot back
+            release.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            RecordingResponse after;
+            do {
+                after = new RecordingResponse();
+                executor.execute(after, () -> Response.ok().build());
+            } while (((Response) after.result.get(5, TimeUnit.SECONDS)).getStatus() == 503
+                && System.nanoTime() < deadline);
+            assertEquals(200, ((Response) after.result.get()).getStatus());
+        } finally {
+            release.countDown();
+            executor.close();
+        }
+    }
+    
+    private static boolean virtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("isVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+    
+    // Thread.isVirtual() is Java 21 API, the tests compile for Java 8
+    private static boolean isVirtual(Thread thread) {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Just enough of an AsyncResponse to see what the executor resumed it with.
+     */
+    private static final class RecordingResponse implements AsyncResponse {
+        
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        private TimeoutHandler timeoutHandler;
+        
+        // What the container does when the timeout expires
+        void timeOut() {
+            timeoutHandler.handleTimeout(this);
+        }
+        
+        @Override
+        public boolean resume(Object response) {
+            return result.complete(response);
+        }
+        
+        @Override
+        public boolean resume(Throwable response) {
+            return result.complete(response);
+        }
+        
+        @Override
+        public boolean cancel() {
+            return result.cancel(false);
+        }
+        
+        @Override
+        public boolean cancel(int retryAfter) {
+            return cancel();
+        }
+        
+        @Override
+        public boolean cancel(Date retryAfter) {
+            return cancel();
+        }
+        
+        @Override
+        public boolean isSuspended() {
+            return !result.isDone();
+        }
+        
+        @Override
+        public boolean isCancelled() {
+            return result.isCancelled();
+        }
+        
+        @Override
+        public boolean isDone() {
+            return result.isDone();
+        }
+        
+        @Override
+        public boolean setTimeout(long time, TimeUnit unit) {
+            return true;
+        }
+        
+        @Override
+        public void setTimeoutHandler(TimeoutHandler handler) {
+            timeoutHandler = handler;
+        }
+        
+        @Override
+        public Collection<Class<?>> register(Class<?> callback) {
+            return Collections.emptyList();
+        }
+        
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+            return Collections.emptyMap();
+        }
+        
+        @Override
+        public Collection<Class<?>> register(Object callback) {
+            return Collections.emptyList();
+        }
+        
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+            return Collections.emptyMap();
+        }
+    }
+}
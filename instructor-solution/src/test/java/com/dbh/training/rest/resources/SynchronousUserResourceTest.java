@@ -0,0 +1,26 @@
+package com.dbh.training.rest.resources;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs all UserResourceTest cases with async.enabled=false, the shipped
+ * default: resource work runs on Jetty's request threads.
+ */
+public class SynchronousUserResourceTest extends UserResourceTest {
+    
+    // Hides BaseIntegrationTest.startServer(), which turns the resource executor on
+    @BeforeAll
+    public static void startServer() throws Exception {
+        startServer(Collections.singletonMap("async.enabled", "false"));
+    }
+    
+    @Test
+    public void testRunsOnTheRequestThreads() {
+        assertEquals(false, getService(ResourceExecutor.class).stats().get("enabled"));
+    }
+}
@@ -0,0 +1,138 @@
+package com.dbh.training.rest.resources;
+
+import com.dbh.training.rest.dto.UserChange;
+import com.dbh.training.rest.models.User;
+import com.dbh.training.rest.repositories.UserStoreVersion;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseBroadcaster;
+import javax.ws.rs.sse.SseEventSink;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SSE fan-out: a client that stops reading must not
+ * hold up the other subscribers.
+ */
+public class UserEventBroadcasterTest {
+    
+    private final UserStoreVersion storeVersion = new UserStoreVersion(1024);
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private UserEventBroadcaster broadcaster;
+    
+    @AfterEach
+    public void tearDown() {
+        unblock.countDown();
+        if (broadcaster != null) {
+            broadcaster.close();
+        }
+    }
+    
+    @Test
+    public void testSubscriberThatNeverReadsDoesNotStallTheOthers() throws Exception {
+        // Two senders, both would be taken by the stuck subscribers below;
+        // the queues hold every change, so only the send timeout drops them
+        broadcaster = new UserEventBroadcaster(storeVersion, 256, 2, 200);
+        Sse sse = new TestSse();
+        
+        // One sink blocks inside send() like a full socket, one never completes its stage
+        RecordingSink blocking = new RecordingSink(() -> {
+            unblock.await();
+            return CompletableFuture.completedFuture(null);
+        });
+        RecordingSink neverCompleting = new RecordingSink(CompletableFuture::new);
+        RecordingSink healthy = new RecordingSink(() -> CompletableFuture.completedFuture(null));
+        broadcaster.subscribe(blocking, sse, null);
+        broadcaster.subscribe(neverCompleting, sse, null);
+        broadcaster.subscribe(healthy, sse, null);
+        
+        // Spread over several send timeouts
+        int changes = 100;
+        for (int i = 1; i <= changes; i++) {
+            write(i);
+            Thread.sleep(10);
+        }
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (healthy.received.size() < changes && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(changes, healthy.received.size());
+        assertFalse(healthy.closed);
+        assertEquals(1, broadcaster.subscriberCount());
+        assertEquals(2, broadcaster.timedOutCount());
+        assertTrue(blocking.closed);
+        assertTrue(neverCompleting.closed);
+    }
+    
+    private void write(long id) {
+        User user = new User("user" + id, null, null, null);
+        user.setId(id);
+        user.setVersion(1L);
+        // UserStoreVersion first, like the listener order in JerseyConfig
+        storeVersion.userCreated(user);
+        broadcaster.userCreated(user);
+    }
+    
+    private interface Send {
+        CompletionStage<?> send() throws InterruptedException;
+    }
+    
+    private static final class RecordingSink implements SseEventSink {
+        
+        final List<String> received = new CopyOnWriteArrayList<>();
+        final Send send;
+        volatile boolean closed;
+        
+        RecordingSink(Send send) {
+            this.send = send;
+        }
+        
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+        
+        @Override
+        public CompletionStage<?> send(OutboundSseEvent event) {
+            try {
+                CompletionStage<?> stage = send.send();
+                received.add(event.getId());
+                return stage;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                CompletableFuture<Void> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+        }
+        
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+    
+    private static final class TestSse implements Sse {
+        
+        @Override
+        public OutboundSseEvent.Builder newEventBuilder() {
+            return new OutboundEvent.Builder();
+        }
+        
+        @Override
+        public SseBroadcaster newBroadcaster() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -1,14 +1,43 @@
 package com.dbh.training.rest.resources;
 
+import com.dbh.training.rest.config.CborProvider;
+import com.dbh.training.rest.config.ProtobufProvider;
+import com.dbh.training.rest.config.SmileProvider;
+import com.dbh.training.rest.dto.BatchOperation;
+import com.dbh.training.rest.filters.AdaptiveConcurrencyLimit;
 import com.dbh.training.rest.models.User;
+import com.dbh.training.rest.proto.UserListMessage;
+import com.dbh.training.rest.proto.UserMessage;
+import com.dbh.training.rest.repositories.UserRepository;
+import com.dbh.training.rest.repositories.UserResponseCache;
 import com.dbh.training.rest.test.BaseIntegrationTest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import io.restassured.RestAssured;
+import io.restassured.config.DecoderConfig;
 import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 import static io.restassured.RestAssured.*;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * REST Assured tests for UserResource CRUD operations.
@@ -30,8 +59,8 @@ public class UserResourceTest extends BaseIntegrationTest {
         // Tests will use paths relative to /api (e.g., "/users", "/users/1")
         
         // Clear all users before each test to ensure test independence
-        // Using package-private method for clean test isolation
-        UserResource.resetForTesting();
+        // The repository is looked up from the running Jersey application
+        getService(UserRepository.class).clear();
     }
     
     @Test
@@ -224,6 +253,925 @@ public class UserResourceTest extends BaseIntegrationTest {
             .statusCode(404);
     }
     
+    @Test
+    public void testCursorPagination() {
+        // Given: Create five users
+        for (int i = 1; i <= 5; i++) {
+            createTestUser("page" + i, "page" + i + "@example.com", "Page", "User" + i);
+        }
+        
+        // When: Request the first page of two
+        String cursor =
+            given()
+                .queryParam("limit", 2)
+                .accept(ContentType.JSON)
+            .when()
+                .get("/users")
+            .then()
+                .statusCode(200)
+                .header("X-Page-Size", equalTo("2"))
+                .header("X-Total-Count", equalTo("5"))
+                .header("X-Next-Cursor", notNullValue())
+                .body("size()", equalTo(2))
+                .body("username", contains("page1", "page2"))
+                .extract()
+                .header("X-Next-Cursor");
+        
+        // Then: Following the cursor returns the next page
+        cursor =
+            given()
+                .queryParam("limit", 2)
+                .queryParam("cursor", cursor)
+                .accept(ContentType.JSON)
+            .when()
+                .get("/users")
+            .then()
+                .statusCode(200)
+                .body("username", contains("page3", "page4"))
+                .extract()
+                .header("X-Next-Cursor");
+        
+        // And: The last page has no next cursor
+        given()
+            .queryParam("limit", 2)
+            .queryParam("cursor", cursor)
+            .accept(ContentType.JSON)
+        .when()
+            .get("/users")
+        .then()
+            .statusCode(200)
+            .header("X-Next-Cursor", nullValue())
+            .body("username", contains("page5"));
+    }
+    
+    @Test
+    public void testPaginationRejectsInvalidParameters() {
+        given()
+            .queryParam("limit", 0)
+        .when()
+            .get("/users")
+        .then()
+            .statusCode(400);
+        
+        given()
+            .queryParam("cursor", "not-a-cursor!")
+        .when()
+            .get("/users")
+        .then()
+            .statusCode(400);
+    }
+    
+    @Test
+    public void testExportUsers() {
+        // Given: More users than fit on a default page
+        int count = Integer.parseInt(UserResource.DEFAULT_PAGE_SIZE) + 5;
+        for (int i = 1; i <= count; i++) {
+            createTestUser("export" + i, "export" + i + "@example.com", "Export", "User" + i);
+        }
+        
+        // When: Export all users
+        // Then: The stream contains every user in id order
+        given()
+            .accept(ContentType.JSON)
+        .when()
+            .get("/users/export")
+        .then()
+            .statusCode(200)
+            .contentType(ContentType.JSON)
+            .body("size()", equalTo(count))
+            .body("[0].username", equalTo("export1"))
+            .body("username[-1]", equalTo("export" + count));
+    }
+    
+    @Test
+    public void testFindByUsernameAndEmail() {
+        // Given: Create test users
+        Integer aliceId = createTestUser("alice", "Alice@Example.com", "Alice", "Smith");
+        createTestUser("bob", "bob@example.com", "Bob", "Jones");
+        
+        // When/Then: Lookup by username
+        given()
+            .queryParam("username", "alice")
+        .when()
+            .get("/users")
+        .then()
+            .statusCode(200)
+            .body("size()", equalTo(1))
+            .body("[0].id", equalTo(aliceId));
+        
+        // When/Then: Lookup by email ignores case
+        given()
+            .queryParam("email", "alice@example.com")
+        .when()
+            .get("/users")
+        .then()
+            .statusCode(200)
+            .body("size()", equalTo(1))
+            .body("[0].username", equalTo("alice"));
+        
+        // When/Then: Both must match
+        given()
+            .queryParam("username", "alice")
+            .queryParam("email", "bob@example.com")
+        .when()
+            .get("/users")
+        .then()
+            .statusCode(200)
+            .body("size()", equalTo(0));
+    }
+    
+    @Test
+    public void testLookupIndexFollowsUpdatesAndDeletes() {
+        // Given: A user whose email changes
+        Integer userId = createTestUser("carol", "carol@example.com", "Carol", "White");
+        User changed = new User("carol", "carol@new.example.com", "Carol", "White");
+        given()
+            .contentType(ContentType.JSON)
+            .body(changed)
+        .when()
+            .put("/users/{id}", userId)
+        .then()
+            .statusCode(200);
+        
+        // Then: Only the new email finds the user
+        given()
+            .queryParam("email", "carol@example.com")
+        .when()
+            .get("/users")
+        .then()
+            .body("size()", equalTo(0));
+        given()
+            .queryParam("email", "carol@new.example.com")
+        .when()
+            .get("/users")
+        .then()
+            .body("size()", equalTo(1));
+        
+        // When: The user is deleted
+        given()
+        .when()
+            .delete("/users/{id}", userId)
+        .then()
+            .statusCode(204);
+        
+        // Then: The username no longer matches
+        given()
+            .queryParam("username", "carol")
+        .when()
+            .get("/users")
+        .then()
+            .body("size()", equalTo(0));
+    }
+    
+    @Test
+    public void testSearchUsers() {
+        // Given: Users with overlapping names
+        createTestUser("jdoe", "jdoe@example.com", "John", "Doe");
+        createTestUser("janedoe", "jane@example.com", "Jane", "Doe");
+        createTestUser("jo", "jo@example.com", "Jo", "Smith");
+        
+        // When/Then: A prefix matches first names, exact matches rank first
+        given()
+            .queryParam("q", "jo")
+        .when()
+            .get("/users/search")
+        .then()
+            .statusCode(200)
+            .body("username", contains("jo", "jdoe"));
+        
+        // When/Then: Cut at limit, the total tells how many matched
+        given()
+            .queryParam("q", "jo")
+            .queryParam("limit", 1)
+        .when()
+            .get("/users/search")
+        .then()
+            .statusCode(200)
+            .header("X-Total-Count", "2")
+            .body("username", contains("jo"));
+        
+        // When/Then: All terms must match
+        given()
+            .queryParam("q", "ja do")
+        .when()
+            .get("/users/search")
+        .then()
+            .statusCode(200)
+            .body("username", contains("janedoe"));
+        
+        // When/Then: A missing query is rejected
+        given()
+        .when()
+            .get("/users/search")
+        .then()
+            .statusCode(400);
+    }
+    
+    @Test
+    public void testBatchOperations() {
+        // Given: One existing user
+        Integer existingId = createTestUser("existing", "existing@example.com", "Existing", "User");
+        
+        // When: Send creates, an update, a delete and two failing operations in one batch
+        given()
+            .contentType(ContentType.JSON)
+            .body(Arrays.asList(
+                new BatchOperation("create", null, new User("batch1", "batch1@example.com", "Batch", "One")),
+                new BatchOperation("create", null, new User("batch2", "batch2@example.com", "Batch", "Two")),
+                new BatchOperation("update", existingId.longValue(),
+                    new User("existing", "changed@example.com", "Existing", "User")),
+                new BatchOperation("delete", 99999L, null),
+                new BatchOperation("rename", null, null),
+                new BatchOperation("delete", existingId.longValue(), null)))
+        .when()
+            .post("/users/batch")
+        .then()
+            // Then: Every operation has its own result, in request order
+            .statusCode(200)
+            .body("size()", equalTo(6))
+            .body("status", contains(201, 201, 200, 404, 400, 204))
+            .body("[0].id", notNullValue());
+        
+        // And: The successful operations were applied
+        given()
+        .when()
+            .get("/users")
+        .then()
+            .body("username", contains("batch1", "batch2"));
+    }
+    
+    @Test
+    public void testImportUsersFromNdjson() {
+        // Given: 2500 users as NDJSON, two of them invalid
+        StringBuilder body = new StringBuilder();
+        for (int i = 1; i <= 2500; i++) {
+            if (i == 10) {
+                body.append("{\"email\":\"nousername@example.com\"}\n");
+            } else if (i == 2000) {
+                body.append("{\"username\":\"bad\",\"email\":\"not-an-email\"}\n");
+            } else {
+                body.append("{\"username\":\"import").append(i).append("\"}\n");
+            }
+        }
+        
+        // When: Import them
+        String response = given()
+            .contentType("application/x-ndjson")
+            .accept("application/x-ndjson")
+            .body(body.toString().getBytes(StandardCharsets.UTF_8))
+        .when()
+            .post("/users/import")
+        .then()
+            .statusCode(200)
+            .extract().asString();
+        
+        // Then: One progress line per chunk of 1000 plus the final line
+        String[] lines = response.trim().split("\n");
+        assertEquals(3, lines.length);
+        JsonPath first = JsonPath.from(lines[0]);
+        assertEquals(1000, first.getInt("processed"));
+        assertEquals(999, first.getInt("created"));
+        assertEquals(1, first.getInt("failed"));
+        assertEquals("record 10 (line 10): username is required", first.getString("errors[0]"));
+        
+        JsonPath last = JsonPath.from(lines[2]);
+        assertTrue(last.getBoolean("done"));
+        assertEquals(2500, last.getInt("processed"));
+        assertEquals(2498, last.getInt("created"));
+        assertEquals(2, last.getInt("failed"));
+        
+        // And: The valid users are stored
+        given()
+        .when()
+            .get("/users?limit=1")
+        .then()
+            .header("X-Total-Count", "2498")
+            .body("[0].username", equalTo("import1"));
+    }
+    
+    @Test
+    public void testImportStopsAtMalformedJson() {
+        String response = given()
+            .contentType("application/x-ndjson")
+            .accept("application/x-ndjson")
+            .body("{\"username\":\"ok1\"}\n{\"username\":\"ok2\"}\n{\"username\": oops}\n{\"username\":\"never\"}\n"
+                .getBytes(StandardCharsets.UTF_8))
+        .when()
+            .post("/users/import")
+        .then()
+            .statusCode(200)
+            .extract().asString();
+        
+        JsonPath result = JsonPath.from(response.trim());
+        assertTrue(result.getBoolean("done"));
+        assertEquals(2, result.getInt("created"));
+        assertEquals(1, result.getInt("failed"));
+        assertTrue(result.getString("errors[0]").startsWith("line 3: malformed JSON"));
+    }
+    
+    @Test
+    public void testCompactJsonWithPrettyOptIn() {
+        Integer id = createTestUser("pretty", "pretty@example.com", "Pretty", "Print");
+        
+        // Default: compact, no whitespace between tokens
+        String compact = given()
+        .when()
+            .get("/users/" + id)
+        .then()
+            .statusCode(200)
+            .extract().asString();
+        assertTrue(compact.startsWith("{\"id\":" + id + ","), compact);
+        
+        // Opt-in via query parameter
+        String pretty = given()
+            .queryParam("pretty", "true")
+        .when()
+            .get("/users/" + id)
+        .then()
+            .statusCode(200)
+            .body("username", equalTo("pretty"))
+            .extract().asString();
+        assertTrue(pretty.contains("\n  \"username\" : \"pretty\""), pretty);
+        
+        // Opt-in via Accept parameter
+        String accepted = given()
+            .accept("application/json; pretty=true")
+        .when()
+            .get("/users/" + id)
+        .then()
+            .statusCode(200)
+            .extract().asString();
+        assertEquals(pretty, accepted);
+        
+        // Plain-text error messages are not turned into JSON strings
+        given()
+            .queryParam("pretty", "true")
+        .when()
+            .get("/users/999999")
+        .then()
+            .statusCode(404)
+            .body(equalTo("User not found"));
+    }
+    
+    @Test
+    public void testBinaryFormats() throws Exception {
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+        ObjectMapper smile = new ObjectMapper(new SmileFactory());
+        
+        // Create with a CBOR body
+        byte[] created = given()
+            .contentType(CborProvider.CBOR)
+            .accept(CborProvider.CBOR)
+            .body(cbor.writeValueAsBytes(new User("binary", "binary@example.com", "Bin", "Ary")))
+        .when()
+            .post("/users")
+        .then()
+            .statusCode(201)
+            .contentType(CborProvider.CBOR)
+            .extract().asByteArray();
+        long id = cbor.readTree(created).get("id").asLong();
+        
+        // Read back as Smile
+        byte[] found = given()
+            .accept(SmileProvider.SMILE)
+        .when()
+            .get("/users/" + id)
+        .then()
+            .statusCode(200)
+            .contentType(SmileProvider.SMILE)
+            .extract().asByteArray();
+        JsonNode user = smile.readTree(found);
+        assertEquals("binary", user.get("username").asText());
+        assertTrue(user.has("createdAt"));
+        
+        // JSON stays the default, and plain-text errors still work with binary Accept
+        given().when().get("/users/" + id).then().contentType(ContentType.JSON);
+        given()
+            .accept(SmileProvider.SMILE)
+        .when()
+            .get("/users/99999")
+        .then()
+            .statusCode(404);
+    }
+    
+    @Test
+    public void testProtobufFormat() throws Exception {
+        UserMessage request = UserMessage.newBuilder()
+            .setUsername("proto")
+            .setEmail("proto@example.com")
+            .setFirstName("")
+            .build();
+        
+        // Create with a protobuf body
+        UserMessage created = UserMessage.parseFrom(given()
+            .contentType(ProtobufProvider.PROTOBUF)
+            .accept(ProtobufProvider.PROTOBUF)
+            .body(request.toByteArray())
+        .when()
+            .post("/users")
+        .then()
+            .statusCode(201)
+            .contentType(ProtobufProvider.PROTOBUF)
+            .extract().asByteArray());
+        assertTrue(created.hasId());
+        assertTrue(created.hasCreatedAt());
+        assertEquals("", created.getFirstName());
+        assertFalse(created.hasLastName());
+        
+        // The list endpoint returns a UserListMessage
+        createTestUser("other", "other@example.com", "Other", "User");
+        UserListMessage list = UserListMessage.parseFrom(given()
+            .accept(ProtobufProvider.PROTOBUF)
+        .when()
+            .get("/users")
+        .then()
+            .statusCode(200)
+            .header("X-Total-Count", "2")
+            .extract().asByteArray());
+        assertEquals(2, list.getUsersCount());
+        assertEquals("proto", list.getUsers(0).getUsername());
+        assertEquals("other", list.getUsers(1).getUsername());
+        
+        // Garbage is rejected
+        given()
+            .contentType(ProtobufProvider.PROTOBUF)
+            .body(new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff})
+        .when()
+            .post("/users")
+        .then()
+            .statusCode(400);
+    }
+    
+    @Test
+    public void testGzipCompressionAboveMinimumSize() {
+        for (int i = 0; i < 20; i++) {
+            createTestUser("gzip" + i, "gzip" + i + "@example.com", "Gzip", "User");
+        }
+        
+        // Large list: compressed (REST Assured decompresses transparently)
+        String etag = given()
+            .header("Accept-Encoding", "gzip")
+        .when()
+            .get("/users")
+        .then()
+            .statusCode(200)
+            .header("Content-Encoding", "gzip")
+            .header("Vary", containsString("Accept-Encoding"))
+            .header("ETag", endsWith("--gzip\""))
+            .body("size()", equalTo(20))
+            .extract().header("ETag");
+        
+        // Revalidating the gzip variant confirms that same tag
+        given()
+            .header("Accept-Encoding", "gzip")
+            .header("If-None-Match", etag)
+        .when()
+            .get("/users")
+        .then()
+            .statusCode(304)
+            .header("ETag", equalTo(etag));
+        
+        // Another page under the same ETag is a different body
+        given()
+            .header("Accept-Encoding", "gzip")
+        .when()
+            .get("/users?limit=15")
+        .then()
+            .statusCode(200)
+            .header("Content-Encoding", "gzip")
+            .body("size()", equalTo(15));
+        
+        // Small body: below the minimum size, sent as is
+        given()
+            .header("Accept-Encoding", "gzip")
+        .when()
+            .get("/users?limit=1")
+        .then()
+            .statusCode(200)
+            .header("Content-Encoding", nullValue());
+        
+        // Client without gzip support
+        given()
+            .config(RestAssured.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+            .header("Accept-Encoding", "identity")
+        .when()
+            .get("/users")
+        .then()
+            .statusCode(200)
+            .header("Content-Encoding", nullValue())
+            .body("size()", equalTo(20));
+    }
+    
+    @Test
+    public void testConditionalRequestsWithETags() {
+        Integer id = createTestUser("etag", "etag@example.com", "E", "Tag");
+        
+        // GET returns the version as a strong ETag
+        String etag = given()
+        .when()
+            .get("/users/" + id)
+        .then()
+            .statusCode(200)
+            .header("ETag", "\"1\"")
+            .body("version", equalTo(1))
+            .extract().header("ETag");
+        
+        // Unchanged: 304 without a body
+        given()
+            .header("If-None-Match", etag)
+        .when()
+            .get("/users/" + id)
+        .then()
+            .statusCode(304)
+            .header("ETag", etag);
+        
+        // Update with the current ETag succeeds and bumps the version
+        User changed = new User("etag", "changed@example.com", "E", "Tag");
+        given()
+            .contentType(ContentType.JSON)
+            .header("If-Match", etag)
+            .body(changed)
+        .when()
+            .put("/users/" + id)
+        .then()
+            .statusCode(200)
+            .header("ETag", "\"2\"")
+            .body("version", equalTo(2));
+        
+        // The old ETag is stale now: no 304, and writes with it fail with 412
+        given()
+            .header("If-None-Match", etag)
+        .when()
+            .get("/users/" + id)
+        .then()
+            .statusCode(200);
+        given()
+            .contentType(ContentType.JSON)
+            .header("If-Match", etag)
+            .body(new User("lost", "lost@example.com", null, null))
+        .when()
+            .put("/users/" + id)
+        .then()
+            .statusCode(412);
+        given()
+            .header("If-Match", etag)
+        .when()
+            .delete("/users/" + id)
+        .then()
+            .statusCode(412);
+        
+        // Nothing was overwritten
+        given()
+        .when()
+            .get("/users/" + id)
+        .then()
+            .body("email", equalTo("changed@example.com"));
+        
+        // Without If-Match writes stay unconditional
+        given()
+        .when()
+            .delete("/users/" + id)
+        .then()
+            .statusCode(204);
+    }
+    
+    @Test
+    public void testCollectionETagFollowsStoreVersion() {
+        createTestUser("first", "first@example.com", "First", "User");
+        
+        String etag = given()
+        .when()
+            .get("/users")
+        .then()
+            .statusCode(200)
+            .header("ETag", notNullValue())
+            .extract().header("ETag");
+        
+        // Nothing written since: 304 for the list, search and lookups
+        given().header("If-None-Match", etag).when().get("/users").then().statusCode(304);
+        given().header("If-None-Match", etag).when().get("/users/search?q=fir").then().statusCode(304);
+        given().header("If-None-Match", etag).when().get("/users?username=first").then().statusCode(304);
+        
+        // Any write changes the collection ETag
+        Integer id = createTestUser("second", "second@example.com", "Second", "User");
+        String afterCreate = given()
+            .header("If-None-Match", etag)
+        .when()
+            .get("/users")
+        .then()
+            .statusCode(200)
+            .body("size()", equalTo(2))
+            .extract().header("ETag");
+        assertNotEquals(etag, afterCreate);
+        
+        given().when().delete("/users/" + id).then().statusCode(204);
+        given().header("If-None-Match", afterCreate).when().get("/users").then().statusCode(200);
+    }
+    
+    @Test
+    public void testETagsDifferPerRepresentation() {
+        Integer id = createTestUser("variant", "variant@example.com", "Vari", "Ant");
+        String json = given()
+            .accept(ContentType.JSON)
+        .when()
+            .get("/users/" + id)
+        .then()
+            .statusCode(200)
+            .header("ETag", "\"1\"")
+            .extract().header("ETag");
+        
+        // The protobuf body is not the JSON one: no 304, and a tag of its own
+        String protobuf = given()
+            .accept(ProtobufProvider.PROTOBUF)
+            .header("If-None-Match", json)
+        .when()
+            .get("/users/" + id)
+        .then()
+            .statusCode(200)
+            .contentType(ProtobufProvider.PROTOBUF)
+            .header("ETag", "\"1--x-protobuf\"")
+            .extract().header("ETag");
+        given()
+            .accept(ProtobufProvider.PROTOBUF)
+            .header("If-None-Match", protobuf)
+        .when()
+            .get("/users/" + id)
+        .then()
+            .statusCode(304);
+        
+        // Neither is the pretty-printed JSON
+        given()
+            .accept(ContentType.JSON)
+            .header("If-None-Match", json)
+        .when()
+            .get("/users/" + id + "?pretty=true")
+        .then()
+            .statusCode(200)
+            .header("ETag", "\"1--pretty\"");
+        
+        // The same goes for collection tags
+        String list = given()
+            .accept(ContentType.JSON)
+        .when()
+            .get("/users")
+        .then()
+            .statusCode(200)
+            .extract().header("ETag");
+        given()
+            .accept(ProtobufProvider.PROTOBUF)
+            .header("If-None-Match", list)
+        .when()
+            .get("/users")
+        .then()
+            .statusCode(200)
+            .contentType(ProtobufProvider.PROTOBUF);
+        given().accept(ContentType.JSON).header("If-None-Match", list).when().get("/users").then().statusCode(304);
+    }
+    
+    @Test
+    public void testSerializedResponseCache() {
+        UserResponseCache cache = getService(UserResponseCache.class);
+        Integer id = createTestUser("cached", "cached@example.com", "Cached", "User");
+        long hits = cache.hits();
+        
+        String first = given().when().get("/users/" + id).then().statusCode(200).extract().asString();
+        String second = given().when().get("/users/" + id).then().statusCode(200).extract().asString();
+        assertEquals(first, second);
+        assertEquals(hits + 1, cache.hits());
+        
+        // Media types are cached separately; pretty output bypasses the cache
+        given().accept(SmileProvider.SMILE).when().get("/users/" + id)
+            .then().statusCode(200).contentType(SmileProvider.SMILE);
+        given().when().get("/users/" + id + "?pretty=true")
+            .then().statusCode(200).body(containsString("\n"));
+        assertEquals(hits + 1, cache.hits());
+        
+        // An update replaces the cached body
+        User changed = new User("cached", "changed@example.com", "Cached", "User");
+        given().contentType(ContentType.JSON).body(changed).when().put("/users/" + id).then().statusCode(200);
+        given()
+        .when()
+            .get("/users/" + id)
+        .then()
+            .statusCode(200)
+            .body("email", equalTo("changed@example.com"))
+            .body("version", equalTo(2));
+    }
+    
+    @Test
+    public void testChangesSinceVersion() {
+        long start = given()
+        .when()
+            .get("/users/changes")
+        .then()
+            .statusCode(200)
+            .body("changes.size()", equalTo(0))
+            .extract().jsonPath().getLong("version");
+        
+        Integer id = createTestUser("delta", "delta@example.com", "Delta", "Sync");
+        User changed = new User("delta", "changed@example.com", "Delta", "Sync");
+        given().contentType(ContentType.JSON).body(changed).when().put("/users/" + id).then().statusCode(200);
+        given().when().delete("/users/" + id).then().statusCode(204);
+        
+        long version = given()
+            .queryParam("since", start)
+        .when()
+            .get("/users/changes")
+        .then()
+            .statusCode(200)
+            .body("changes.op", contains("create", "update", "delete"))
+            .body("changes.id", everyItem(equalTo(id)))
+            .body("changes[1].userVersion", equalTo(2))
+            .body("hasMore", equalTo(false))
+            .extract().jsonPath().getLong("version");
+        assertEquals(start + 3, version);
+        
+        // Paged with limit, and nothing new after the latest version
+        given().queryParam("since", start).queryParam("limit", 2).when().get("/users/changes")
+            .then().statusCode(200).body("changes.size()", equalTo(2)).body("hasMore", equalTo(true));
+        given().queryParam("since", version).when().get("/users/changes")
+            .then().statusCode(200).body("changes.size()", equalTo(0));
+        
+        // Versions from before the last clear are gone
+        given().queryParam("since", start - 1).when().get("/users/changes").then().statusCode(410);
+        getService(UserRepository.class).clear();
+        given().queryParam("since", version).when().get("/users/changes").then().statusCode(410);
+    }
+    
+    @Test
+    public void testEventStreamResumesAndPushesLiveChanges() throws Exception {
+        long start = given().when().get("/users/changes").then().extract().jsonPath().getLong("version");
+        Integer alice = createTestUser("alice", "alice@example.com", "Alice", "Smith");
+        Integer bob = createTestUser("bob", "bob@example.com", "Bob", "Jones");
+        
+        // Resume: the missed writes come from the changelog first
+        HttpURLConnection connection = openEventStream(start);
+        try (BufferedReader events = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            assertEquals("text/event-stream", connection.getContentType());
+            Map<String, String> first = readEvent(events);
+            assertEquals("create", first.get("event"));
+            assertEquals(String.valueOf(start + 1), first.get("id"));
+            assertEquals(alice.longValue(), new ObjectMapper().readTree(first.get("data")).get("id").asLong());
+            assertEquals(String.valueOf(start + 2), readEvent(events).get("id"));
+            
+            // Then live writes
+            given().when().delete("/users/" + bob).then().statusCode(204);
+            Map<String, String> live = readEvent(events);
+            assertEquals("delete", live.get("event"));
+            assertEquals(String.valueOf(start + 3), live.get("id"));
+        } finally {
+            connection.disconnect();
+        }
+        
+        // A version the changelog no longer covers gets a reset
+        connection = openEventStream(start - 1);
+        try (BufferedReader events = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            assertEquals("reset", readEvent(events).get("event"));
+        } finally {
+            connection.disconnect();
+        }
+    }
+    
+    @Test
+    public void testOverloadIsShedButHealthChecksAreServed() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = getService(AdaptiveConcurrencyLimit.class);
+        // A slot is freed only once the response filters ran: let the previous request get there
+        for (int i = 0; i < 100 && limit.getInFlight() > 0; i++) {
+            Thread.sleep(20);
+        }
+        long start = System.nanoTime();
+        int taken = 0;
+        try {
+            // Occupy every slot, as if that many requests were in progress
+            while (limit.tryAcquire()) {
+                taken++;
+            }
+            given()
+            .when()
+                .get("/users")
+            .then()
+                .statusCode(503)
+                .header("Retry-After", "1");
+            
+            given().when().get("/health").then().statusCode(200);
+            given()
+            .when()
+                .get("/health/details")
+            .then()
+                .statusCode(200)
+                .body("admission.rejected", greaterThan(0));
+        } finally {
+            for (int i = 0; i < taken; i++) {
+                limit.release(start, false);
+            }
+        }
+        given().when().get("/users").then().statusCode(200);
+    }
+    
+    @Test
+    public void testStreamingImportHoldsItsSlotUntilTheTransferEnds() throws Exception {
+        AdaptiveConcurrencyLimit limit = getService(AdaptiveConcurrencyLimit.class);
+        for (int i = 0; i < 100 && limit.getInFlight() > 0; i++) {
+            Thread.sleep(20);
+        }
+        int limitBefore = limit.getLimit();
+        StringBuilder chunk = new StringBuilder();
+        for (int i = 1; i <= UserResource.IMPORT_CHUNK_SIZE; i++) {
+            chunk.append("{\"username\":\"slow").append(i).append("\"}\n");
+        }
+        byte[] lines = chunk.toString().getBytes(StandardCharsets.UTF_8);
+        
+        // A raw socket, so the upload can be left unfinished
+        try (Socket socket = new Socket("localhost", TEST_PORT)) {
+            socket.setSoTimeout(5000);
+            OutputStream upload = socket.getOutputStream();
+            upload.write(("POST " + BASE_PATH + "/users/import HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Content-Type: application/x-ndjson\r\n"
+                + "Accept: application/x-ndjson\r\n"
+                + "Transfer-Encoding: chunked\r\n\r\n"
+                + Integer.toHexString(lines.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            upload.write(lines);
+            upload.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+            upload.flush();
+            
+            // The first chunk is imported while the upload is still open
+            UserRepository users = getService(UserRepository.class);
+            for (int i = 0; i < 250 && users.count() < UserResource.IMPORT_CHUNK_SIZE; i++) {
+                Thread.sleep(20);
+            }
+            assertEquals(UserResource.IMPORT_CHUNK_SIZE, users.count());
+            assertEquals(1, limit.getInFlight());
+            
+            // With the remaining slots taken, another import is shed
+            int taken = 0;
+            try {
+                while (limit.tryAcquire()) {
+                    taken++;
+                }
+                given()
+                    .contentType("application/x-ndjson")
+                    .accept("application/x-ndjson")
+                    .body("{\"username\":\"rejected\"}\n".getBytes(StandardCharsets.UTF_8))
+                .when()
+                    .post("/users/import")
+                .then()
+                    .statusCode(503)
+                    .header("Retry-After", "1");
+            } finally {
+                for (int i = 0; i < taken; i++) {
+                    limit.releaseWithoutSample();
+                }
+            }
+            
+            upload.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            upload.flush();
+            BufferedReader response = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = response.readLine()) != null && !line.contains("\"done\":true")) {
+                // headers, chunk sizes and progress lines
+            }
+            assertNotNull(line);
+        }
+        
+        // Released once finished, and the transfer did not count as latency
+        for (int i = 0; i < 100 && limit.getInFlight() > 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, limit.getInFlight());
+        assertEquals(limitBefore, limit.getLimit());
+        assertEquals(UserResource.IMPORT_CHUNK_SIZE, getService(UserRepository.class).count());
+    }
+    
+    private static HttpURLConnection openEventStream(long lastEventId) throws IOException {
+        URL url = new URL(BASE_URI + ":" + TEST_PORT + BASE_PATH + "/users/events");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("Accept", "text/event-stream");
+        connection.setRequestProperty("Last-Event-ID", String.valueOf(lastEventId));
+        connection.setReadTimeout(5000);
+        return connection;
+    }
+    
+    // Reads the fields of the next event, up to the blank line that ends it
+    private static Map<String, String> readEvent(BufferedReader events) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        String line;
+        while ((line = events.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (!fields.isEmpty()) {
+                    return fields;
+                }
+                continue;
+            }
+            int colon = line.indexOf(':');
+            fields.put(line.substring(0, colon), line.substring(colon + 1).trim());
+        }
+        throw new EOFException("Event stream ended");
+    }
+    
     // Helper method to create test users
     private Integer createTestUser(String username, String email, String firstName, String lastName) {
         User user = new User();
@@ -7,12 +7,19 @@ import io.restassured.filter.log.LogDetail;
 import io.restassured.http.ContentType;
 import io.restassured.specification.RequestSpecification;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.glassfish.jersey.servlet.ServletContainer;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Base class for all integration tests.
  * 
@@ -35,11 +42,34 @@ public abstract class BaseIntegrationTest {
     
     @BeforeAll
     public static void startServer() throws Exception {
+        startServer(Collections.emptyMap());
+    }
+    
+    /**
+     * Starts the server with extra settings, e.g. from a subclass's own
+     * static startServer() (which hides this class's one).
+     * 
+     * The settings are set as system properties only while the server starts,
+     * where the configuration is read, so they do not leak into other tests.
+     * 
+     * @param properties Settings on top of the integration test defaults
+     */
+    protected static void startServer(Map<String, String> properties) throws Exception {
         logger.info("Starting test server on port {}", TEST_PORT);
         
+        Map<String, String> settings = new LinkedHashMap<>();
+        // Integration tests go through the async resource path (off by default)
+        settings.put("async.enabled", "true");
+        settings.putAll(properties);
+        
         // Start the server
-        server = Application.createServer(TEST_PORT);
-        server.start();
+        Map<String, String> previous = setSystemProperties(settings);
+        try {
+            server = Application.createServer(TEST_PORT);
+            server.start();
+        } finally {
+            setSystemProperties(previous);
+        }
         
         // Wait for server to be ready
         Thread.sleep(1000);
@@ -62,6 +92,20 @@ public abstract class BaseIntegrationTest {
         logger.info("Test server started successfully");
     }
     
+    // Returns the previous values; null clears a property
+    private static Map<String, String> setSystemProperties(Map<String, String> properties) {
+        Map<String, String> previous = new LinkedHashMap<>();
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            previous.put(property.getKey(), System.getProperty(property.getKey()));
+            if (property.getValue() == null) {
+                System.clearProperty(property.getKey());
+            } else {
+                System.setProperty(property.getKey(), property.getValue());
+            }
+        }
+        return previous;
+    }
+    
     @AfterAll
     public static void stopServer() throws Exception {
         logger.info("Stopping test server");
@@ -125,6 +169,28 @@ public abstract class BaseIntegrationTest {
         return spec;
     }
     
+    /**
+     * Look up a service from the running Jersey application, e.g. the
+     * UserRepository, so tests can reset state between test methods.
+     * 
+     * @param type The service type
+     * @return The bound instance
+     */
+    protected static <T> T getService(Class<T> type) {
+        try {
+            ServletContextHandler context = server.getChildHandlerByClass(ServletContextHandler.class);
+            for (ServletHolder holder : context.getServletHandler().getServlets()) {
+                if (holder.getServlet() instanceof ServletContainer) {
+                    ServletContainer container = (ServletContainer) holder.getServlet();
+                    return container.getApplicationHandler().getInjectionManager().getInstance(type);
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not look up " + type.getName(), e);
+        }
+        throw new IllegalStateException("No Jersey servlet found");
+    }
+    
     /**
      * Get the full URL for a given path.
      * 